@@ -0,0 +1,198 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.PlanetAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+import com.fs.starfarer.api.campaign.econ.MarketConditionAPI;
+import com.fs.starfarer.api.impl.campaign.ids.Factions;
+
+/**
+ * Ranks planets by how good a colony they'd make, without going through every planet's conditions each time.
+ *
+ * data/config/mam_colony_ratings.csv gives each condition a hazard (in percent, like the game shows it)
+ * and a resource value. Every condition in the file gets a bit; a planet's conditions are read once and
+ * stored as those bits, and every condition's hazard and resources sit in plain arrays indexed by bit.
+ * Scoring a planet is then a few array reads, and ranking the whole sector is one pass over a long[].
+ *
+ * Conditions that aren't in the file don't count either way.
+ * Call refresh() after conditions change (for example once a planet has been surveyed).
+ */
+public class MaMColonyRanking {
+	public static final String PATH = "data/config/mam_colony_ratings.csv";
+	//This much hazard weighs as much as one resource point.
+	public static final float HAZARD_PER_POINT = 25f;
+
+	//Shared by every ranking, read from the file once.
+	private static Map<String, Integer> bits;
+	private static float[] hazard;
+	private static float[] resources;
+	private static int words; //longs per planet
+
+	private final List<PlanetAPI> planets = new ArrayList<PlanetAPI>();
+	private long[] conditionBits = new long[0];
+	private float[] scores = new float[0];
+
+	public static void loadTables() throws Exception {
+		JSONArray rows = Global.getSettings().loadCSV(PATH);
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		float[] rowHazard = new float[rows.length()];
+		float[] rowResources = new float[rows.length()];
+		for (int i = 0; i < rows.length(); i++) {
+			JSONObject row = rows.getJSONObject(i);
+			String id = row.getString("condition");
+			if (ids.containsKey(id)) {
+				throw new RuntimeException(PATH + " lists " + id + " twice");
+			}
+			ids.put(id, Integer.valueOf(i));
+			rowHazard[i] = (float) row.optDouble("hazard", 0);
+			rowResources[i] = (float) row.optDouble("resources", 0);
+		}
+		setTables(ids, rowHazard, rowResources);
+	}
+
+	/**
+	 * Uses these tables instead of the file's: the condition ids with their bits, and the hazard and resources by bit.
+	 * (Package-private, so the benchmarks next to this repository can rank without a game to load the file from.)
+	 */
+	static void setTables(Map<String, Integer> ids, float[] byBitHazard, float[] byBitResources) {
+		bits = ids;
+		hazard = byBitHazard;
+		resources = byBitResources;
+		words = (byBitHazard.length + 63) / 64;
+	}
+
+	private MaMColonyRanking() {
+	}
+
+	/**
+	 * A ranking of these planets from condition bits that were already worked out, words longs per planet in the same order,
+	 * without reading any markets. refresh() reads the planets' markets as usual.
+	 */
+	MaMColonyRanking(List<PlanetAPI> planets, long[] conditionBits) {
+		this.planets.addAll(planets);
+		this.conditionBits = conditionBits;
+		rescore();
+	}
+
+	/**
+	 * Every planet (but not star) in the sector that could still be colonized:
+	 * its market only holds surface conditions, nobody lives there yet and no faction owns it.
+	 */
+	public static MaMColonyRanking ofSector(SectorAPI sector) {
+		MaMColonyRanking ranking = new MaMColonyRanking();
+		List<StarSystemAPI> systems = sector.getStarSystems();
+		for (int i = 0; i < systems.size(); i++) {
+			List<PlanetAPI> planets = ((StarSystemAPI) systems.get(i)).getPlanets();
+			for (int p = 0; p < planets.size(); p++) {
+				PlanetAPI planet = (PlanetAPI) planets.get(p);
+				if (!planet.isStar() && planet.getMarket() != null && isUncolonized(planet.getMarket())) {
+					ranking.planets.add(planet);
+				}
+			}
+		}
+		ranking.refresh();
+		return ranking;
+	}
+
+	private static boolean isUncolonized(MarketAPI market) {
+		if (!market.isPlanetConditionMarketOnly()) {
+			return false;
+		}
+		String faction = market.getFactionId();
+		if (faction != null && !Factions.NEUTRAL.equals(faction)) {
+			return false;
+		}
+		//Colonies carry a population_1 to population_10 condition.
+		List<MarketConditionAPI> conditions = market.getConditions();
+		for (int i = 0; i < conditions.size(); i++) {
+			if (((MarketConditionAPI) conditions.get(i)).getId().startsWith("population_")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads every planet's conditions again and rescores them.
+	 */
+	public void refresh() {
+		conditionBits = new long[planets.size() * words];
+		for (int i = 0; i < planets.size(); i++) {
+			encode(((PlanetAPI) planets.get(i)).getMarket(), i * words);
+		}
+		rescore();
+	}
+
+	private void rescore() {
+		scores = new float[planets.size()];
+		for (int i = 0; i < scores.length; i++) {
+			scores[i] = score(i);
+		}
+	}
+
+	private void encode(MarketAPI market, int offset) {
+		List<MarketConditionAPI> conditions = market.getConditions();
+		for (int c = 0; c < conditions.size(); c++) {
+			Integer bit = (Integer) bits.get(((MarketConditionAPI) conditions.get(c)).getId());
+			if (bit != null) {
+				conditionBits[offset + (bit.intValue() >>> 6)] |= 1L << bit.intValue();
+			}
+		}
+	}
+
+	private float score(int planet) {
+		float totalHazard = 0;
+		float totalResources = 0;
+		for (int w = 0; w < words; w++) {
+			long set = conditionBits[planet * words + w];
+			while (set != 0) {
+				int bit = (w << 6) + Long.numberOfTrailingZeros(set);
+				totalHazard += hazard[bit];
+				totalResources += resources[bit];
+				set &= set - 1;
+			}
+		}
+		return totalResources - totalHazard / HAZARD_PER_POINT;
+	}
+
+	/**
+	 * The best planets to colonize, best first.
+	 */
+	public List<PlanetAPI> best(int count) {
+		count = Math.min(count, scores.length);
+		//Keep the best few found so far in order; the rest of the sector is one comparison each.
+		int[] top = new int[count];
+		int found = 0;
+		for (int i = 0; i < scores.length; i++) {
+			if (found == count && (count == 0 || scores[i] <= scores[top[count - 1]])) {
+				continue;
+			}
+			int at = found < count ? found++ : count - 1;
+			while (at > 0 && scores[top[at - 1]] < scores[i]) {
+				top[at] = top[at - 1];
+				at--;
+			}
+			top[at] = i;
+		}
+		List<PlanetAPI> result = new ArrayList<PlanetAPI>(found);
+		for (int i = 0; i < found; i++) {
+			result.add((PlanetAPI) planets.get(top[i]));
+		}
+		return result;
+	}
+
+	public float getScore(PlanetAPI planet) {
+		int i = planets.indexOf(planet);
+		return i < 0 ? Float.NaN : scores[i];
+	}
+}
@@ -0,0 +1,223 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.SectorEntityToken;
+import com.fs.starfarer.api.campaign.econ.EconomyAPI;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+
+/**
+ * Everything needed to turn a planet (or station) into a working colony, written down before any of it happens.
+ *
+ * Setting up a market by hand only works if the steps happen in the right order:
+ * 1) set the market faction id
+ * 2) add industries and sub-markets to the market
+ * 3) add the market to the global economy
+ * Get it wrong and the game crashes, or every commodity sells for $1.
+ * A blueprint doesn't care what order you describe the market in; {@link #commitAll(List)} always does the steps in the right order,
+ * and {@link Builder#build()} refuses a market that could never be set up correctly.
+ */
+public class MaMMarketBlueprint {
+	//"generator" is the id of the tariff value in the tariff MutableStat.
+	public static final String TARIFF_MOD_ID = "generator";
+
+	public final SectorEntityToken primaryEntity;
+	public final String marketId; //only used if the entity doesn't have a market yet
+	public final String name;
+	public final int size;
+	public final String factionId;
+	public final MarketAPI.SurveyLevel surveyLevel; //may be null
+	public final float tariff; //negative leaves the tariff alone
+	public final List<String> conditions;
+	public final List<String> industries;
+	public final List<String> submarkets;
+	public final List<SectorEntityToken> connectedEntities;
+
+	private MaMMarketBlueprint(Builder builder) {
+		primaryEntity = builder.primaryEntity;
+		marketId = builder.marketId;
+		name = builder.name;
+		size = builder.size;
+		factionId = builder.factionId;
+		surveyLevel = builder.surveyLevel;
+		tariff = builder.tariff;
+		conditions = Collections.unmodifiableList(new ArrayList<String>(builder.conditions));
+		industries = Collections.unmodifiableList(new ArrayList<String>(builder.industries));
+		submarkets = Collections.unmodifiableList(new ArrayList<String>(builder.submarkets));
+		connectedEntities = Collections.unmodifiableList(new ArrayList<SectorEntityToken>(builder.connectedEntities));
+	}
+
+	/**
+	 * Describe the market piece by piece, in any order, then call {@link #build()}.
+	 */
+	public static class Builder {
+		private final SectorEntityToken primaryEntity;
+		private String marketId;
+		private String name;
+		private int size = 1;
+		private String factionId;
+		private MarketAPI.SurveyLevel surveyLevel;
+		private float tariff = -1;
+		//Sets so the same thing can't be added twice, linked so things are added in the order you gave them.
+		private final Set<String> conditions = new LinkedHashSet<String>();
+		private final Set<String> industries = new LinkedHashSet<String>();
+		private final Set<String> submarkets = new LinkedHashSet<String>();
+		private final Set<SectorEntityToken> connectedEntities = new LinkedHashSet<SectorEntityToken>();
+
+		public Builder(SectorEntityToken primaryEntity) {
+			this.primaryEntity = primaryEntity;
+			this.name = primaryEntity.getName(); //The market display name is usually the planet's name.
+		}
+
+		public Builder marketId(String marketId) {
+			this.marketId = marketId;
+			return this;
+		}
+
+		public Builder name(String name) {
+			this.name = name;
+			return this;
+		}
+
+		public Builder size(int size) {
+			this.size = size;
+			return this;
+		}
+
+		public Builder faction(String factionId) {
+			this.factionId = factionId;
+			return this;
+		}
+
+		public Builder surveyLevel(MarketAPI.SurveyLevel surveyLevel) {
+			this.surveyLevel = surveyLevel;
+			return this;
+		}
+
+		/**
+		 * @param tariff as a fraction, so 0.3f is a 30% tariff
+		 */
+		public Builder tariff(float tariff) {
+			this.tariff = tariff;
+			return this;
+		}
+
+		public Builder condition(String conditionId) {
+			conditions.add(conditionId);
+			return this;
+		}
+
+		public Builder industry(String industryId) {
+			industries.add(industryId);
+			return this;
+		}
+
+		public Builder submarket(String submarketId) {
+			submarkets.add(submarketId);
+			return this;
+		}
+
+		public Builder connect(SectorEntityToken entity) {
+			connectedEntities.add(entity);
+			return this;
+		}
+
+		public Builder connectAll(List<SectorEntityToken> entities) {
+			connectedEntities.addAll(entities);
+			return this;
+		}
+
+		public MaMMarketBlueprint build() {
+			String where = primaryEntity.getId();
+			//The market's owning faction must be set before adding sub-markets and industries or the game will crash.
+			if (factionId == null && (!industries.isEmpty() || !submarkets.isEmpty())) {
+				throw new IllegalStateException(where + ": a market with industries or sub-markets needs a faction");
+			}
+			if (size < 1) {
+				throw new IllegalStateException(where + ": a colony market needs a size of at least 1, not " + size);
+			}
+			if (tariff > 1) {
+				throw new IllegalStateException(where + ": tariff is a fraction (0.3 for 30%), not " + tariff);
+			}
+			if (connectedEntities.contains(primaryEntity)) {
+				throw new IllegalStateException(where + ": the primary entity can't also be a connected entity");
+			}
+			return new MaMMarketBlueprint(this);
+		}
+	}
+
+	/**
+	 * Sets up every market, then adds them all to the economy, then links their connected entities.
+	 * No market joins the economy half-built, and the economy is only touched once all of them are ready.
+	 */
+	public static List<MarketAPI> commitAll(List<MaMMarketBlueprint> blueprints) {
+		List<MarketAPI> markets = new ArrayList<MarketAPI>(blueprints.size());
+		for (int i = 0; i < blueprints.size(); i++) {
+			markets.add(((MaMMarketBlueprint) blueprints.get(i)).setUp());
+		}
+
+		EconomyAPI globalEconomy = Global.getSector().getEconomy();
+		for (int i = 0; i < markets.size(); i++) {
+			MaMStartupProfiler.start();
+			globalEconomy.addMarket(
+				(MarketAPI) markets.get(i),
+				false //The "withJunkAndChatter" flag. Debris and chatter are added whenever you load a game anyway.
+			);
+			MaMStartupProfiler.stop("EconomyAPI.addMarket");
+		}
+
+		for (int i = 0; i < blueprints.size(); i++) {
+			((MaMMarketBlueprint) blueprints.get(i)).connect((MarketAPI) markets.get(i));
+		}
+		return markets;
+	}
+
+	/**
+	 * Steps 1 and 2: everything except joining the economy.
+	 */
+	private MarketAPI setUp() {
+		//A planet that already has surface conditions (for example from Misc.generatePlanetConditions())
+		//already has a market. We reuse it instead of trying to create a new one.
+		MarketAPI market = primaryEntity.getMarket();
+		if (market == null) {
+			market = Global.getFactory().createMarket(marketId != null ? marketId : primaryEntity.getId() + "_market", name, size);
+			primaryEntity.setMarket(market);
+			market.setPrimaryEntity(primaryEntity);
+		}
+		market.setPlanetConditionMarketOnly(false); //A proper colony, not just a "surface only" market.
+		market.setSize(size);
+		if (surveyLevel != null) {
+			market.setSurveyLevel(surveyLevel);
+		}
+		for (int i = 0; i < conditions.size(); i++) {
+			market.addCondition((String) conditions.get(i));
+		}
+
+		if (factionId != null) {
+			market.setFactionId(factionId);
+		}
+		for (int i = 0; i < industries.size(); i++) {
+			market.addIndustry((String) industries.get(i));
+		}
+		for (int i = 0; i < submarkets.size(); i++) {
+			market.addSubmarket((String) submarkets.get(i));
+		}
+		if (tariff >= 0) {
+			market.getTariff().modifyFlat(TARIFF_MOD_ID, tariff);
+		}
+		return market;
+	}
+
+	private void connect(MarketAPI market) {
+		for (int i = 0; i < connectedEntities.size(); i++) {
+			SectorEntityToken entity = (SectorEntityToken) connectedEntities.get(i);
+			market.getConnectedEntities().add(entity);
+			entity.setMarket(market);
+		}
+	}
+}
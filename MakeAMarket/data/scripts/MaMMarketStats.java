@@ -0,0 +1,195 @@
+package data.scripts;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+
+import com.fs.starfarer.api.EveryFrameScript;
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.econ.Industry;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+
+/**
+ * Logs what this mod's markets look like while the campaign runs.
+ *
+ * Every few seconds it reads a couple of our markets' size, conditions, industries, sub-markets, connected entities,
+ * hazard and the upkeep of each industry, without changing anything. Upkeep is averaged over the last few samples,
+ * and everything is written to starsector.log as CSV, along with how long the reading itself took.
+ * (It doesn't time the economy or the fleet spawners; the API has no way to do that market by market.)
+ *
+ * Only added in dev mode, and never saved. data/config/mam_market_stats.json limits how often and how much it samples.
+ */
+public class MaMMarketStats implements EveryFrameScript {
+	public static final String PATH = "data/config/mam_market_stats.json";
+	//Where onNewGame() leaves the ids of the markets we added, so we find them again after a load.
+	public static final String MARKETS_KEY = "mam_addedMarkets";
+
+	private static final Logger log = Global.getLogger(MaMMarketStats.class);
+
+	private final List<String> marketIds;
+	private final float intervalSeconds;
+	private final int marketsPerSample;
+	private final int window;
+	private final int reportEverySamples;
+
+	//Per "market" or "market/industry": the last few upkeep readings, written round and round.
+	private final Map<String, float[]> upkeep = new LinkedHashMap<String, float[]>();
+	private final Map<String, Integer> readings = new LinkedHashMap<String, Integer>();
+	//Per market: size, conditions, industries, sub-markets, connected entities and hazard, as last seen.
+	private final Map<String, float[]> latest = new LinkedHashMap<String, float[]>();
+
+	//How long sampling itself takes, so we can tell it stays small.
+	private com.sun.management.ThreadMXBean threads;
+	private long overheadNanos = 0;
+	private long overheadBytes = 0;
+
+	private float sinceLastSample = 0;
+	private int nextMarket = 0;
+	private int samplesTaken = 0;
+
+	public MaMMarketStats(List<String> marketIds, JSONObject settings) {
+		this.marketIds = new ArrayList<String>(marketIds);
+		intervalSeconds = (float) settings.optDouble("intervalSeconds", 5);
+		marketsPerSample = Math.max(1, settings.optInt("marketsPerSample", 2));
+		window = Math.max(1, settings.optInt("window", 12));
+		reportEverySamples = Math.max(1, settings.optInt("reportEverySamples", 12));
+		try {
+			threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		} catch (Throwable t) {
+			//Not every JVM can count allocations. We still get the time.
+			threads = null;
+		}
+	}
+
+	@Override
+	public boolean isDone() {
+		return marketIds.isEmpty();
+	}
+
+	@Override
+	public boolean runWhilePaused() {
+		return false;
+	}
+
+	@Override
+	public void advance(float amount) {
+		sinceLastSample += amount;
+		if (sinceLastSample < intervalSeconds) {
+			return;
+		}
+		sinceLastSample = 0;
+
+		long startBytes = allocatedBytes();
+		long start = System.nanoTime();
+		//Take turns, so each sample only reads a few markets.
+		int count = Math.min(marketsPerSample, marketIds.size());
+		for (int i = 0; i < count; i++) {
+			nextMarket %= marketIds.size();
+			String id = (String) marketIds.get(nextMarket);
+			MarketAPI market = Global.getSector().getEconomy().getMarket(id);
+			if (market == null) {
+				//Decivilized or otherwise gone; nothing left to look at.
+				marketIds.remove(nextMarket);
+				latest.remove(id);
+				if (marketIds.isEmpty()) {
+					return;
+				}
+				continue;
+			}
+			read(market);
+			nextMarket++;
+		}
+		overheadNanos += System.nanoTime() - start;
+		overheadBytes += allocatedBytes() - startBytes;
+
+		samplesTaken++;
+		if (samplesTaken % reportEverySamples == 0) {
+			report();
+		}
+	}
+
+	private void read(MarketAPI market) {
+		List<Industry> industries = market.getIndustries();
+		float total = 0;
+		for (int i = 0; i < industries.size(); i++) {
+			Industry industry = (Industry) industries.get(i);
+			float industryUpkeep = industry.getUpkeep().getModifiedValue();
+			record(market.getId() + "/" + industry.getId(), industryUpkeep);
+			total += industryUpkeep;
+		}
+		record(market.getId(), total);
+
+		latest.put(market.getId(), new float[] {
+			market.getSize(),
+			market.getConditions().size(),
+			industries.size(),
+			market.getSubmarketsCopy().size(),
+			market.getConnectedEntities().size(),
+			market.getHazardValue()
+		});
+	}
+
+	private void record(String key, float value) {
+		float[] kept = (float[]) upkeep.get(key);
+		Integer taken = (Integer) readings.get(key);
+		if (kept == null) {
+			kept = new float[window];
+			upkeep.put(key, kept);
+			taken = Integer.valueOf(0);
+		}
+		kept[taken.intValue() % window] = value;
+		readings.put(key, Integer.valueOf(taken.intValue() + 1));
+	}
+
+	private float averageUpkeep(String key) {
+		float[] kept = (float[]) upkeep.get(key);
+		int taken = Math.min(((Integer) readings.get(key)).intValue(), window);
+		float sum = 0;
+		for (int i = 0; i < taken; i++) {
+			sum += kept[i];
+		}
+		return sum / taken;
+	}
+
+	/**
+	 * Logs what every market looked like last time, and its average upkeep over its last few samples.
+	 */
+	private void report() {
+		StringBuilder csv = new StringBuilder("market,part,size,conditions,industries,submarkets,connectedEntities,hazard,avgUpkeep\n");
+		for (Iterator<String> keys = upkeep.keySet().iterator(); keys.hasNext();) {
+			String key = (String) keys.next();
+			int slash = key.indexOf('/');
+			String market = slash < 0 ? key : key.substring(0, slash);
+			float[] seen = (float[]) latest.get(market);
+			if (seen == null) {
+				continue;
+			}
+			float average = averageUpkeep(key);
+			csv.append(market).append(',').append(slash < 0 ? "total" : key.substring(slash + 1));
+			for (int i = 0; i < seen.length; i++) {
+				//Only the market's own row repeats its figures; industry rows just have their upkeep.
+				csv.append(',');
+				if (slash < 0) {
+					csv.append(seen[i]);
+				}
+			}
+			csv.append(',').append(average).append('\n');
+		}
+		csv.append("sampling took: ").append(overheadNanos / 1000f / samplesTaken).append(" us and ")
+			.append(overheadBytes / samplesTaken).append(" bytes per sample\n");
+		log.info("Market stats\n" + csv);
+	}
+
+	private long allocatedBytes() {
+		if (threads == null) {
+			return 0;
+		}
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -1,16 +1,20 @@
 package data.scripts;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+
+import org.json.JSONObject;
+import org.lwjgl.util.vector.Vector2f;
 
 import com.fs.starfarer.api.BaseModPlugin;
 import com.fs.starfarer.api.Global;
-import com.fs.starfarer.api.campaign.CustomCampaignEntityAPI;
+import com.fs.starfarer.api.campaign.JumpPointAPI;
 import com.fs.starfarer.api.campaign.PlanetAPI;
 import com.fs.starfarer.api.campaign.SectorAPI;
 import com.fs.starfarer.api.campaign.SectorEntityToken;
 import com.fs.starfarer.api.campaign.StarSystemAPI;
-import com.fs.starfarer.api.campaign.econ.EconomyAPI;
 import com.fs.starfarer.api.campaign.econ.MarketAPI;
 import com.fs.starfarer.api.campaign.econ.MarketConditionAPI;
 import com.fs.starfarer.api.impl.campaign.ids.Conditions;
@@ -22,72 +26,147 @@ import com.fs.starfarer.api.impl.campaign.procgen.StarSystemGenerator;
 import com.fs.starfarer.api.util.Misc;
 
 public class MaMModPlugin extends BaseModPlugin {
+	//Every entity this mod adds carries this tag, so MakeAStar's content census can count it.
+	//"modcontent:" is the prefix the census looks for (MaSContentCensus.CONTENT_TAG_PREFIX).
+	//It's written out here so this mod works without MakeAStar; if the prefix ever changes, change it here too.
+	public static final String CONTENT_TAG = "modcontent:makeAMarket";
+
+	//Star systems closer than this would overlap in hyperspace. MakeAStar keeps its own systems this far apart too.
+	private static final float MIN_SYSTEM_DISTANCE = 2000;
+
+	//Settings for MaMMarketStats; only loaded in dev mode.
+	private static JSONObject statsSettings;
+
+	@Override
+	public void onApplicationLoad() throws Exception {
+		//Turn on dev mode to see how long each step takes in starsector.log.
+		MaMStartupProfiler.setEnabled(Global.getSettings().isDevMode());
+		if (Global.getSettings().isDevMode()) {
+			statsSettings = Global.getSettings().loadJSON(MaMMarketStats.PATH);
+		}
+		MaMColonyRanking.loadTables();
+	}
+
 	@Override
 	public void onNewGame() {
-		tutorialPart1();
-		tutorialPart2();
+		MaMStartupProfiler.start();
+		//Orbits only need updating once we're done adding things, however many things we add.
+		//See MaMOrbitUpdates.java.
+		MaMOrbitUpdates.begin();
+		try {
+			List<MaMMarketBlueprint> markets = new ArrayList<MaMMarketBlueprint>();
+			MaMStartupProfiler.start();
+			markets.add(tutorialPart1());
+			MaMStartupProfiler.stop("tutorialPart1");
+			MaMStartupProfiler.start();
+			markets.add(tutorialPart2());
+			MaMStartupProfiler.stop("tutorialPart2");
+
+			//Each tutorial part only describes its market.
+			//Here they're all set up in the right order and added to the economy together.
+			MaMStartupProfiler.start();
+			List<MarketAPI> added = MaMMarketBlueprint.commitAll(markets);
+			MaMStartupProfiler.stop("MaMMarketBlueprint.commitAll");
+
+			//Remember which markets are ours (in the save), so MaMMarketStats can find them after a load.
+			ArrayList<String> addedIds = new ArrayList<String>();
+			for (int i = 0; i < added.size(); i++) {
+				addedIds.add(((MarketAPI) added.get(i)).getId());
+			}
+			Global.getSector().getPersistentData().put(MaMMarketStats.MARKETS_KEY, addedIds);
+
+		} finally {
+			//Even if something above goes wrong, so the batch never stays open.
+			MaMStartupProfiler.start();
+			MaMOrbitUpdates.end();
+			MaMStartupProfiler.stop("updateAllOrbits");
+		}
+
+		MaMStartupProfiler.stop("onNewGame");
+		MaMStartupProfiler.report("onNewGame");
+	}
+
+	@Override
+	public void onGameLoad(boolean newGame) {
+		//In dev mode, log what our markets look like as the game goes on. See MaMMarketStats.java.
+		//It's a transient script, so it's never written to the save and is added again on every load.
+		//onNewGame() stored a List<String> under this key; persistent data only gives back Objects.
+		@SuppressWarnings("unchecked")
+		List<String> ids = (List<String>) Global.getSector().getPersistentData().get(MaMMarketStats.MARKETS_KEY);
+		if (statsSettings != null && ids != null) {
+			Global.getSector().addTransientScript(new MaMMarketStats(ids, statsSettings));
+		}
+
+		//Also in dev mode, list the planets that would make the best new colonies. See MaMColonyRanking.java.
+		if (Global.getSettings().isDevMode()) {
+			MaMStartupProfiler.start();
+			MaMColonyRanking ranking = MaMColonyRanking.ofSector(Global.getSector());
+			List<PlanetAPI> best = ranking.best(5);
+			MaMStartupProfiler.stop("MaMColonyRanking");
+			for (int i = 0; i < best.size(); i++) {
+				PlanetAPI planet = (PlanetAPI) best.get(i);
+				Global.getLogger(MaMModPlugin.class).info("Colony candidate " + (i + 1) + ": " + planet.getName()
+					+ " in " + planet.getContainingLocation().getName() + ", score " + ranking.getScore(planet));
+			}
+			MaMStartupProfiler.report("onGameLoad");
+		}
 	}
 	
 	/**
 	 * Add a new market to a new star system.
 	 * Let's add a minimal market from scratch to the game.
+	 * (Not private, so the benchmarks next to this repository can time it on its own.)
 	 */
-	private void tutorialPart1() {
-		StarSystemAPI system = Global.getSector().createStarSystem("Wade's Star");
+	MaMMarketBlueprint tutorialPart1() {
+		//MakeAStar already has a "Wade's Star" near -400, -9400, so ours gets its own name, ids and spot.
+		//Other mods may have put a system there first, so we check and move over if we have to.
+		Vector2f spot = freeSpot(-2800, -9400);
+		StarSystemAPI system = Global.getSector().createStarSystem("Toob's Star");
 		
-		PlanetAPI star = system.initStar("wades_star", "star_red_dwarf", 500, -400, -9400, 250);
+		PlanetAPI star = system.initStar("mam_toobs_star", "star_red_dwarf", 500, spot.x, spot.y, 250);
 		
 		PlanetAPI planet = system.addPlanet("yoo-toob", star, "Yoo-Toob", "barren", 0, 73, 1777, 107);
+		star.addTag(CONTENT_TAG);
+		planet.addTag(CONTENT_TAG);
 		//Setting the planet faction will add the comm directory and tavern to its menu once a market is set up.
 		//It's not strictly required.
 		//Mixing the faction ownership of the planet with the faction ownership of the market 
 		//will have... unusual results in the display, but market ownership is the more important factor.
 		planet.setFaction(Factions.INDEPENDENT);
 
-		//Create and initialize market:
-		//Note that the size of the market determines how much demand there is for various goods.
-		//A size 1 market's "population & infrastructure" industry (assuming there is one) 
-		//will only demand supplies and produce nothing.
-		//A smaller market is less likely to have a colony administrator assinged to it, 
-		//despite the fact that a colony administrator will show up in its comms link.
-		MarketAPI market = Global.getFactory().createMarket(
-			"yoo-toob_market", //market id
-			planet.getName(), //market display name, usually the planet's name
-			1 //market size
-		);
-		
-		planet.setMarket(market);
-
-		//Market global property settings
-		market.setPrimaryEntity(planet);
-
-		//Setting survey level to fully surveyed will automatically reveal normally 
-		//hidden resources on the planet overview as well as remove a silly "unexplored" description.
-		//When a planet has a market, you won't be able to survey it (nor should you have to).
-		market.setSurveyLevel(MarketAPI.SurveyLevel.FULL);
-		//Set a tariff percentage of 30%.
-		//This part of the code uses a mechanism called "MutableStat".
-		//It is used in a variety of places throughout Starsector to accomplish a variety of things.
-		//Here it is important to simply know that "generator" is the id of the tariff value
-		//and that you set it using the modifyFlat() function with a decimal value.
-		market.getTariff().modifyFlat("generator", 0.3f);
+		//Describe the market:
+		//Setting up a market by hand only works if a few steps happen in the correct order.
+		//MaMMarketBlueprint takes care of that for us, so we can describe the market in whatever order reads best.
+		//Open MaMMarketBlueprint.java to see the steps it takes and why.
+		MaMMarketBlueprint.Builder market = new MaMMarketBlueprint.Builder(planet)
+			.marketId("yoo-toob_market")
+			//Note that the size of the market determines how much demand there is for various goods.
+			//A size 1 market's "population & infrastructure" industry (assuming there is one) 
+			//will only demand supplies and produce nothing.
+			//A smaller market is less likely to have a colony administrator assinged to it, 
+			//despite the fact that a colony administrator will show up in its comms link.
+			.size(1)
+			//Setting survey level to fully surveyed will automatically reveal normally 
+			//hidden resources on the planet overview as well as remove a silly "unexplored" description.
+			//When a planet has a market, you won't be able to survey it (nor should you have to).
+			.surveyLevel(MarketAPI.SurveyLevel.FULL)
+			//Set a tariff percentage of 30%.
+			//Under the hood this uses a mechanism called "MutableStat".
+			//It is used in a variety of places throughout Starsector to accomplish a variety of things.
+			//Here it is important to simply know that the tariff is set as a decimal value.
+			.tariff(0.3f);
 
 		//Planet surface/market conditions
-		market.setPlanetConditionMarketOnly(false);
 		//Some tags, like "thin atmosphere" will affect industry and installation upkeep costs.
-		market.addCondition(Conditions.THIN_ATMOSPHERE);
-		//market.addCondition(Conditions.ORE_SPARSE);
+		market.condition(Conditions.THIN_ATMOSPHERE);
+		//market.condition(Conditions.ORE_SPARSE);
 		//The population tag is purely decorative. You can set it to whatever you want or even omit it.
 		//For player colonies, the population tag is adjusted to match the growth of the colony market size.
-		market.addCondition(Conditions.POPULATION_1);
-		
-		//The following settings must be implemented in the correct order to function properly:
-		//1) set the market faction id
-		//2) add industries and sub-markets to the market
-		//3) add the market to the global economy
+		market.condition(Conditions.POPULATION_1);
 		
-		//The market's owning faction must be set before adding sub-markets and industries or the game will crash.
-		market.setFactionId(Factions.INDEPENDENT);
+		//The market's owning faction must be set or the game will crash once industries and sub-markets are added.
+		//The blueprint won't even build without one if we add any.
+		market.faction(Factions.INDEPENDENT);
 		
 		//Planet colony industries
 		//If no industries are added, the game won't crash... 
@@ -102,151 +181,179 @@ public class MaMModPlugin extends BaseModPlugin {
 		//Stability information will be available upon mouse over of "stability".
 		//There will be a severe accessibility penalty due to lack of spaceport.
 		//Finally, population adds an "administrator" NPC to the comm directory.
-		market.addIndustry(Industries.POPULATION);
+		market.industry(Industries.POPULATION);
 		
 		//A spaceport does not need to be added to access the open and black submarkets,
 		//but colony access will have a -100% penalty.
 		//Spaceport enables the repairs option in the main menu.
 		//Spaceport adds "quartermaster" and "portmaster" NPCs to the comm directory.
-		market.addIndustry(Industries.SPACEPORT);
+		market.industry(Industries.SPACEPORT);
 
 		//Adding an orbital station (or bigger) to the industries on a planet will
 		//automatically place a station in orbit.
 		//Also adds a "station commander" NPC to the comm directory.
-		market.addIndustry(Industries.ORBITALSTATION);
+		market.industry(Industries.ORBITALSTATION);
 
 		//Note that there is much more to be said about industries and their effects.
 		//An explanation of each is beyond the scope of this tutorial.
 
 		//Planet sub-markets
-		market.addSubmarket(Submarkets.SUBMARKET_STORAGE);
-		market.addSubmarket(Submarkets.SUBMARKET_BLACK);
-		market.addSubmarket(Submarkets.SUBMARKET_OPEN);
+		market.submarket(Submarkets.SUBMARKET_STORAGE);
+		market.submarket(Submarkets.SUBMARKET_BLACK);
+		market.submarket(Submarkets.SUBMARKET_OPEN);
 		
-		//The market needs to be added to the global economy after adding sub-markets and industries.
+		//The market will be added to the global economy by onNewGame(), after sub-markets and industries.
 		//If you don't do this, at best all commodities will be $1 because the colony has no idea how to price them.
 		//At worst, the game will crash.
-		EconomyAPI globalEconomy = Global.getSector().getEconomy();		
-		globalEconomy.addMarket(
-			market, //The market to add obviously!
-			false //The "withJunkAndChatter" flag. It will add space debris in orbit and radio chatter sound effects.*
-		);
-		//* Debris and chatter are added whenever you load a game, so this just tells the game not to add it *right now*.
 
 		//SectorEntityToken relay = system.addCustomEntity("mam_relay", "Comm Relay", "comm_relay", Factions.INDEPENDENT);
 		//relay.setCircularOrbit(star, 0, 1831, 23);
 
 		system.autogenerateHyperspaceJumpPoints(true, true);
+		//The jump points it made are ours too, so they get the tag like the star and planet did.
+		List<SectorEntityToken> entities = system.getAllEntities();
+		for (int i = 0; i < entities.size(); i++) {
+			SectorEntityToken entity = (SectorEntityToken) entities.get(i);
+			if (entity instanceof JumpPointAPI) {
+				entity.addTag(CONTENT_TAG);
+			}
+		}
 		
 		//Final note: by adding a market to this system, 
 		//any other planets added or generated will also be marked as "fully surveyed".
+		return market.build();
 	}
 
 	/**
 	 * Add a new market to an existing system.
 	 * Let's inject conflict into the Corvus system by putting a Tritachyon mining operation in their territory.
 	 */
-	private void tutorialPart2() {
-		//Let's return to "Testulon" from the first tutorial and make it a new planet in Hegemony space.
+	private MaMMarketBlueprint tutorialPart2() {
+		//Let's return to Corvus from the first tutorial and add a new planet in Hegemony space.
+		//The first tutorial's "Testulon" may well be there already, so ours is "Tritulon", with ids of its own.
 		StarSystemAPI system = Global.getSector().getStarSystem("Corvus");
 		SectorEntityToken star = system.getStar();
-		PlanetAPI planet = system.addPlanet("testulon", star, "Testulon", "lava_minor", 240, 120, 2000, 120);
+		//Nor do we just pick an orbit: MaMOrbitAllocator finds the first one at or beyond 2000
+		//that doesn't run into anything already there (including Testulon).
+		float orbitRadius = new MaMOrbitAllocator(system).allocate(star, 120, 2000, 100);
+		PlanetAPI planet = system.addPlanet("tritulon", star, "Tritulon", "lava_minor", 240, 120, orbitRadius, 120);
+		planet.addTag(CONTENT_TAG);
 		
 		//This is a useful method for automatically adding random but appropriate surface conditions to a planet.
 		//It will ignore any planet that has already had conditions added to it.
 		//This means vanilla systems like Corvus won't have existing planets modified.
 		//Only our new planet will have (random) resources applied to it.
-		Misc.generatePlanetConditions(system, StarAge.OLD);
+		//"Random" comes from StarSystemGenerator.random. Seeding it from the sector seed for the call
+		//means the same seed always rolls the same resources for Tritulon.
+		Random previous = StarSystemGenerator.random;
+		StarSystemGenerator.random = new Random(mix(Global.getSector().getSeedString().hashCode() * 31L + planet.getId().hashCode()));
+		try {
+			Misc.generatePlanetConditions(system, StarAge.OLD);
+		} finally {
+			StarSystemGenerator.random = previous;
+		}
 		
 		//Since we'll add a Tritachyon market/colony, 
 		//set ownership of the planet to Tritachyon for in-game visual consistency.
 		planet.setFaction(Factions.TRITACHYON);
 
-		//Testulon Station Alpha
-		//We'll mostly interact with this object's SystemEntityToken features,
-		//but as a point of note, it's actually a CustomCampaignEntityAPI.
-		CustomCampaignEntityAPI station1 = system.addCustomEntity(
-			"testulon_station1", //id
-			"Testulon Station Alpha", //display name
-			"station_side03", //types are found in data/config/custom_entities.json
-			Factions.TRITACHYON
-		);
-		station1.setCircularOrbitPointingDown(
-			planet, 
-			0, //Angle
-			223, //orbit radius
-			23 //orbit period
-		);
-		//Since we have the CustomCampaignEnityAPI available, let's use it.
-		//We know from looking in the custom_entities.json that the orbital's sprite size is 30, 
-		//so add 5 to that to make the encounter radius a little more snug.
-		station1.setRadius(35);
-
-		//Testulon Station Beta
+		//Tritulon Station Alpha and Tritulon Station Beta
 		//Because the only thing better than *one* orbital station is...
-		CustomCampaignEntityAPI station2 = system.addCustomEntity(
-			"testulon_station2",
-			"Testulon Station Beta", 
+		//Each station is added with system.addCustomEntity() and put in orbit with setCircularOrbitPointingDown().
+		//We'll mostly interact with them as SystemEntityTokens,
+		//but as a point of note, they're actually CustomCampaignEntityAPIs.
+		//MaMStationRing does all of that for as many stations as we give it names, spaced evenly around the planet.
+		//It also uses the CustomCampaignEntityAPI to make the encounter radius a little more snug:
+		//the orbital's sprite size in custom_entities.json (30) plus 5, so 35.
+		List<SectorEntityToken> stations = MaMStationRing.add(
+			system,
+			planet, //what they orbit
+			"tritulon_station", //ids will be tritulon_station1, tritulon_station2...
+			new String[] {"Tritulon Station Alpha", "Tritulon Station Beta"}, //display names
 			"station_side03", //types are found in data/config/custom_entities.json
-			Factions.TRITACHYON
-		);
-		station2.setCircularOrbitPointingDown(
-			planet, 
-			180, //Angle
+			Factions.TRITACHYON,
+			0, //Angle of the first station; Beta ends up at 180
 			223, //orbit radius
-			23 //orbit period
+			23, //orbit period
+			35 //encounter radius
 		);
-		station2.setRadius(35);
+		for (int i = 0; i < stations.size(); i++) {
+			((SectorEntityToken) stations.get(i)).addTag(CONTENT_TAG);
+		}
 
 		//Because we already technically setup market conditions above (using Misc.generatePlanetConditions())
 		//a market is already on this planet.
-		//We're going to grab its reference object instead of trying to create a new market.
-		MarketAPI market = planet.getMarket();
-		String marketId = market.getId(); //We don't need the id really, but take note that it has been auto-generated.
-
-		market.setPlanetConditionMarketOnly(false); //We are going to turn this into a proper colony and not just a "surface only".
-		market.setFactionId(Factions.TRITACHYON);
-		market.addCondition(Conditions.POPULATION_3);
-		market.setSize(3);
-		//At this point in the code we can actually "dock" with the planet! 
-		//But there's no sub-markets to interact with... let's fix that now.
-		market.addSubmarket(Submarkets.SUBMARKET_BLACK);
-		market.addSubmarket(Submarkets.SUBMARKET_OPEN);
-		
-		//Population is basically essential.
-		market.addIndustry(Industries.POPULATION);
-		market.addIndustry(Industries.SPACEPORT);
-		//Put a defensive station in orbit.
-		market.addIndustry(Industries.ORBITALSTATION_HIGH);
-		//Make it so fleets will spawn here.
-		market.addIndustry(Industries.PATROLHQ);
-		//Make it so that ores will be mined here.
-		market.addIndustry(Industries.MINING);
-		
-		//Those rascally Tritachyon have set their tariffs to 15%!
-		market.getTariff().modifyFlat("generator", 0.15f);
+		//The blueprint will grab its reference object instead of trying to create a new market.
+		//Take note that its id has been auto-generated.
+		//We are going to turn it into a proper colony and not just a "surface only".
+		MaMMarketBlueprint.Builder market = new MaMMarketBlueprint.Builder(planet)
+			.faction(Factions.TRITACHYON)
+			.condition(Conditions.POPULATION_3)
+			.size(3)
+			//Once it's set up, we can "dock" with the planet! 
+			//But without sub-markets there'd be nothing to interact with... let's fix that now.
+			.submarket(Submarkets.SUBMARKET_BLACK)
+			.submarket(Submarkets.SUBMARKET_OPEN)
+			//Population is basically essential.
+			.industry(Industries.POPULATION)
+			.industry(Industries.SPACEPORT)
+			//Put a defensive station in orbit.
+			.industry(Industries.ORBITALSTATION_HIGH)
+			//Make it so fleets will spawn here.
+			.industry(Industries.PATROLHQ)
+			//Make it so that ores will be mined here.
+			.industry(Industries.MINING)
+			//Those rascally Tritachyon have set their tariffs to 15%!
+			.tariff(0.15f);
 
-		//Unless you want all the commodities to buy/sell for $1, add to the local economy!
-		EconomyAPI globalEconomy = Global.getSector().getEconomy();		
-		globalEconomy.addMarket(market, false);
+		//Unless you want all the commodities to buy/sell for $1, the market must join the economy!
+		//onNewGame() does that for us once the blueprint is built.
 
 		//Now let's link the orbiting stations to the colony market.
-		//Do this by adding it to the market's connected entities.
+		//This adds each one to the market's connected entities once the market is in the economy.
 		//When a colony has an orbital station industry *and* you connect an orbital entity to its market,
 		//that orbital entity is used to represent the orbital station visually 
 		//instead of spawning an additional generic one.
-		market.getConnectedEntities().add(station1);
-		station1.setMarket(market);
-		//Since we set the faction when we created the station entity above, 
-		//we don't need to explicitly set its faction here.
-		
-		//We can add the second orbital, too. However, it will not be used to represent the orbital station.
-		market.getConnectedEntities().add(station2);
-		station2.setMarket(market);
-		//Again, this entity was initialized as Tritachyon, so we don't need to set its faction.
+		//Only the first station (Alpha) will be used to represent the orbital station.
+		market.connectAll(stations);
+		//Since we set the faction when we created the station entities above, 
+		//we don't need to explicitly set their faction here.
 
 		//This will update the order of planets as they appear in the planet list display.
 		//As of 0.9 it does not appear to be strictly necessary.
-		system.updateAllOrbits();
+		//It happens once onNewGame() is done adding things, rather than right here.
+		MaMOrbitUpdates.update(system);
+
+		return market.build();
+	}
+
+	//SplitMix64 finalizer, the same one MakeAStar seeds its generator with (copied, so neither mod needs the other).
+	//Similar seeds would otherwise give java.util.Random very similar first rolls.
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * The spot closest to the one asked for that is at least MIN_SYSTEM_DISTANCE from every existing star system,
+	 * trying further and further west.
+	 */
+	private static Vector2f freeSpot(float x, float y) {
+		List<StarSystemAPI> systems = Global.getSector().getStarSystems();
+		for (int tries = 0; tries < 64; tries++) {
+			float candidate = x - tries * MIN_SYSTEM_DISTANCE;
+			boolean free = true;
+			for (int i = 0; i < systems.size() && free; i++) {
+				Vector2f location = ((StarSystemAPI) systems.get(i)).getLocation();
+				float dx = location.x - candidate;
+				float dy = location.y - y;
+				free = dx * dx + dy * dy >= MIN_SYSTEM_DISTANCE * MIN_SYSTEM_DISTANCE;
+			}
+			if (free) {
+				return new Vector2f(candidate, y);
+			}
+		}
+		throw new IllegalStateException("No free spot in hyperspace near " + x + ", " + y);
 	}
 }
@@ -0,0 +1,128 @@
+package data.scripts;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.fs.starfarer.api.campaign.SectorEntityToken;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+
+/**
+ * Hands out orbits in a star system that don't run into anything already orbiting there.
+ *
+ * Around every focus (a star, a planet with moons...) it keeps the occupied bands: orbit radius plus or minus body radius.
+ * Touching or overlapping bands are merged and kept sorted by distance, so finding where a band starts is a
+ * logarithmic lookup, and looking for a free slot only steps over the bands in between.
+ *
+ * A body with moons takes up more room than its own radius; adding a moon widens the planet's band around its star
+ * (and so on up the chain), so neighbouring planets keep clear of the moons too.
+ */
+public class MaMOrbitAllocator {
+	private final Map<String, TreeMap<Float, Float>> bandsByFocus = new HashMap<String, TreeMap<Float, Float>>();
+	private final Set<String> indexed = new HashSet<String>();
+
+	/**
+	 * Indexes everything already orbiting something in the system.
+	 */
+	public MaMOrbitAllocator(StarSystemAPI system) {
+		indexNewEntities(system);
+	}
+
+	/**
+	 * Indexes anything added to the system since the last call, for example by StarSystemGenerator.addOrbitingEntities().
+	 */
+	public void indexNewEntities(StarSystemAPI system) {
+		List<SectorEntityToken> entities = system.getAllEntities();
+		for (int i = 0; i < entities.size(); i++) {
+			SectorEntityToken entity = (SectorEntityToken) entities.get(i);
+			if (!indexed.add(entity.getId())) {
+				continue;
+			}
+			if (entity.getOrbitFocus() != null && entity.getCircularOrbitRadius() > 0) {
+				reserve(entity.getOrbitFocus(), entity.getCircularOrbitRadius(), entity.getRadius());
+			}
+		}
+	}
+
+	/**
+	 * The smallest orbit radius, at least minOrbit, where a body of this radius keeps the given clearance from everything else.
+	 * The orbit is reserved straight away.
+	 */
+	public float allocate(SectorEntityToken focus, float bodyRadius, float minOrbit, float clearance) {
+		TreeMap<Float, Float> bands = bands(focus);
+		float halfWidth = bodyRadius + clearance;
+		float low = minOrbit - halfWidth;
+
+		//A band starting further in may still reach past where we want to start.
+		Map.Entry<Float, Float> before = bands.floorEntry(Float.valueOf(low));
+		if (before != null && ((Float) before.getValue()).floatValue() > low) {
+			low = ((Float) before.getValue()).floatValue();
+		}
+		//Step over bands until the gap in front of the next one is wide enough.
+		while (true) {
+			Map.Entry<Float, Float> next = bands.ceilingEntry(Float.valueOf(low));
+			if (next == null || ((Float) next.getKey()).floatValue() - low >= 2 * halfWidth) {
+				break;
+			}
+			low = ((Float) next.getValue()).floatValue();
+		}
+
+		float orbit = low + halfWidth;
+		reserve(focus, orbit, bodyRadius);
+		return orbit;
+	}
+
+	/**
+	 * Records a body that was placed without asking, so later allocations keep clear of it.
+	 */
+	public void reserve(SectorEntityToken focus, float orbitRadius, float bodyRadius) {
+		insert(bands(focus), orbitRadius - bodyRadius, orbitRadius + bodyRadius);
+
+		//The focus now reaches out as far as this body does, so its own band around whatever it orbits grows to match.
+		SectorEntityToken parent = focus.getOrbitFocus();
+		if (parent != null && focus.getCircularOrbitRadius() > 0) {
+			reserve(parent, focus.getCircularOrbitRadius(), orbitRadius + bodyRadius);
+		}
+	}
+
+	/**
+	 * How far out the furthest thing orbiting the focus reaches (or the focus' own radius, if nothing does).
+	 */
+	public float getOutermost(SectorEntityToken focus) {
+		TreeMap<Float, Float> bands = bands(focus);
+		return ((Float) bands.lastEntry().getValue()).floatValue();
+	}
+
+	private TreeMap<Float, Float> bands(SectorEntityToken focus) {
+		TreeMap<Float, Float> bands = (TreeMap<Float, Float>) bandsByFocus.get(focus.getId());
+		if (bands == null) {
+			bands = new TreeMap<Float, Float>();
+			//The focus itself is in the way, too.
+			bands.put(Float.valueOf(0), Float.valueOf(focus.getRadius()));
+			bandsByFocus.put(focus.getId(), bands);
+		}
+		return bands;
+	}
+
+	private static void insert(TreeMap<Float, Float> bands, float start, float end) {
+		start = Math.max(start, 0);
+		Map.Entry<Float, Float> before = bands.floorEntry(Float.valueOf(start));
+		if (before != null && ((Float) before.getValue()).floatValue() >= start) {
+			start = ((Float) before.getKey()).floatValue();
+			end = Math.max(end, ((Float) before.getValue()).floatValue());
+			bands.remove(before.getKey());
+		}
+		while (true) {
+			Map.Entry<Float, Float> next = bands.ceilingEntry(Float.valueOf(start));
+			if (next == null || ((Float) next.getKey()).floatValue() > end) {
+				break;
+			}
+			end = Math.max(end, ((Float) next.getValue()).floatValue());
+			bands.remove(next.getKey());
+		}
+		bands.put(Float.valueOf(start), Float.valueOf(end));
+	}
+}
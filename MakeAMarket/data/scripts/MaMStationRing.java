@@ -0,0 +1,55 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.CustomCampaignEntityAPI;
+import com.fs.starfarer.api.campaign.CustomEntitySpecAPI;
+import com.fs.starfarer.api.campaign.LocationAPI;
+import com.fs.starfarer.api.campaign.SectorEntityToken;
+
+/**
+ * Places any number of stations evenly spaced around a planet (or anything else), all facing it.
+ *
+ * Every station in the ring gets the encounter radius it's given.
+ * Each type is checked against custom_entities.json once, however many stations or rings use it.
+ */
+public class MaMStationRing {
+	//Custom entity types already found in custom_entities.json.
+	private static final Set<String> knownTypes = new HashSet<String>();
+
+	/**
+	 * Adds one station per name. Their ids are idPrefix followed by 1, 2, 3...
+	 * @param type a custom entity type from data/config/custom_entities.json, like "station_side03"
+	 * @param firstAngle where the first station goes; the rest follow at equal spacing
+	 * @param radius the encounter radius of every station
+	 * @return the new stations, ready to be connected to a market
+	 */
+	public static List<SectorEntityToken> add(LocationAPI system, SectorEntityToken focus, String idPrefix, String[] names,
+			String type, String factionId, float firstAngle, float orbitRadius, float orbitDays, float radius) {
+		checkType(type);
+		float spacing = 360f / names.length;
+		List<SectorEntityToken> stations = new ArrayList<SectorEntityToken>(names.length);
+		for (int i = 0; i < names.length; i++) {
+			CustomCampaignEntityAPI station = system.addCustomEntity(idPrefix + (i + 1), names[i], type, factionId);
+			station.setCircularOrbitPointingDown(focus, firstAngle + i * spacing, orbitRadius, orbitDays);
+			station.setRadius(radius);
+			stations.add(station);
+		}
+		return stations;
+	}
+
+	static void checkType(String type) {
+		if (knownTypes.contains(type)) {
+			return;
+		}
+		CustomEntitySpecAPI spec = Global.getSettings().getCustomEntitySpec(type);
+		if (spec == null) {
+			throw new IllegalArgumentException("No custom entity type " + type + " in custom_entities.json");
+		}
+		knownTypes.add(type);
+	}
+}
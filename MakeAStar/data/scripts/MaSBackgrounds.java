@@ -0,0 +1,114 @@
+package data.scripts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.fs.starfarer.api.EveryFrameScript;
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.LocationAPI;
+
+/**
+ * Gives each star system a background sized for the player's screen, and only once the player is there to see it.
+ *
+ * A background only ever fills the screen, so on a 1366x768 screen a 1536 pixel copy looks the same as the
+ * full 2048 pixel image while taking little more than half the texture memory. The smaller copies are written
+ * ahead of time by tools/MaSBackgroundTiers.java, for the sizes listed in "backgrounds" in mas_systems.json.
+ *
+ * A system's background isn't set until the player first enters it, so systems nobody visits never need theirs.
+ * The script is saved with the game, so systems still waiting keep waiting after a reload.
+ */
+public class MaSBackgrounds implements EveryFrameScript {
+	private static final Logger log = Global.getLogger(MaSBackgrounds.class);
+
+	//From the "backgrounds" section of mas_systems.json; the same for every new game.
+	private static int fullSize = 0; //longest side of the original images; 0 means there are no smaller copies
+	private static int[] tiers = new int[0]; //sizes of the smaller copies, smallest first
+
+	//Backgrounds still waiting for the player to show up.
+	private final Map<LocationAPI, String> pending = new HashMap<LocationAPI, String>();
+	private boolean closed = false;
+
+	public static void configure(JSONObject json) throws Exception {
+		fullSize = json.optInt("fullSize", 0);
+		JSONArray sizes = json.optJSONArray("tiers");
+		tiers = new int[sizes == null ? 0 : sizes.length()];
+		for (int i = 0; i < tiers.length; i++) {
+			tiers[i] = sizes.getInt(i);
+			if (tiers[i] <= 0 || tiers[i] >= fullSize) {
+				throw new RuntimeException(MaSSystemBlueprint.PATH + ": background tier " + tiers[i] + " must be between 0 and fullSize " + fullSize);
+			}
+		}
+		Arrays.sort(tiers);
+	}
+
+	/**
+	 * The smallest copy of this background that still covers the screen, or the background itself if none does.
+	 */
+	static String pick(String background) {
+		int size = pickSize();
+		if (size == fullSize) {
+			return background;
+		}
+		int dot = background.lastIndexOf('.');
+		return background.substring(0, dot) + "_" + size + background.substring(dot);
+	}
+
+	private static int pickSize() {
+		float screen = Math.max(Global.getSettings().getScreenWidth(), Global.getSettings().getScreenHeight());
+		for (int i = 0; i < tiers.length; i++) {
+			if (tiers[i] >= screen) {
+				return tiers[i];
+			}
+		}
+		return fullSize;
+	}
+
+	/**
+	 * Sets the system's background the first time the player enters it.
+	 */
+	public void add(LocationAPI system, String background) {
+		String picked = pick(background);
+		pending.put(system, picked);
+
+		int size = pickSize();
+		if (size < fullSize) {
+			//Backgrounds are uploaded uncompressed, 4 bytes per pixel.
+			float savedMegabytes = ((long) fullSize * fullSize - (long) size * size) * 4 / (1024f * 1024f);
+			log.info(system.getName() + " uses " + picked + ", about " + savedMegabytes + " MB less texture memory than the full size background");
+		}
+	}
+
+	/**
+	 * No more systems are coming, so the script can stop once the last waiting system is visited.
+	 */
+	public void close() {
+		closed = true;
+	}
+
+	@Override
+	public boolean isDone() {
+		return closed && pending.isEmpty();
+	}
+
+	@Override
+	public boolean runWhilePaused() {
+		return false;
+	}
+
+	@Override
+	public void advance(float amount) {
+		if (pending.isEmpty()) {
+			return;
+		}
+		LocationAPI here = Global.getSector().getCurrentLocation();
+		String background = (String) pending.remove(here);
+		if (background != null) {
+			here.setBackgroundTextureFilename(background);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.lwjgl.util.vector.Vector2f;
+
+import com.fs.starfarer.api.EveryFrameScript;
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.CampaignFleetAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+
+/**
+ * Builds star systems a few at a time instead of all at once in onNewGame().
+ *
+ * Every frame it builds queued systems until the frame's time budget is used up (but always at least one,
+ * so a single slow system can't stall the queue forever).
+ * With an approach range set, a system waits until the player's fleet comes within that distance
+ * of its hyperspace location; systems nobody visits are never built at all.
+ *
+ * Vanilla's own generation and other mods may add star systems after a system was queued, without knowing about it.
+ * So right before building, each system's spot, name and ids are checked again against the sector as it is then,
+ * and against the systems still waiting in the queue.
+ *
+ * The queue is saved with the game, so anything still waiting is picked up again after a reload.
+ */
+public class MaSBuildQueue implements EveryFrameScript {
+	private static final Logger log = Global.getLogger(MaSBuildQueue.class);
+
+	/**
+	 * Told about every system the queue builds.
+	 */
+	public interface Listener {
+		void systemBuilt(String name, float millis, int stillQueued);
+	}
+
+	private final List<MaSSystemBlueprint> queued = new ArrayList<MaSSystemBlueprint>();
+	private final float frameBudgetMillis;
+	private final float approachRange; //0 or less builds without waiting for the player
+	private final MaSBackgrounds backgrounds;
+	private final float systemRadius;
+
+	//Listeners aren't saved; whoever wants the reports adds themselves again after a load.
+	private transient List<Listener> listeners;
+
+	public MaSBuildQueue(float frameBudgetMillis, float approachRange, MaSBackgrounds backgrounds, float systemRadius) {
+		this.frameBudgetMillis = frameBudgetMillis;
+		this.approachRange = approachRange;
+		this.backgrounds = backgrounds;
+		this.systemRadius = systemRadius;
+	}
+
+	public void add(MaSSystemBlueprint blueprint) {
+		queued.add(blueprint);
+	}
+
+	public int getQueuedCount() {
+		return queued.size();
+	}
+
+	public void addListener(Listener listener) {
+		if (listeners == null) {
+			listeners = new ArrayList<Listener>();
+		}
+		listeners.add(listener);
+	}
+
+	@Override
+	public boolean isDone() {
+		//Once everything is built the game drops the script.
+		return queued.isEmpty();
+	}
+
+	@Override
+	public boolean runWhilePaused() {
+		return false;
+	}
+
+	@Override
+	public void advance(float amount) {
+		SectorAPI sector = Global.getSector();
+		Vector2f playerLocation = null;
+		if (approachRange > 0) {
+			CampaignFleetAPI player = sector.getPlayerFleet();
+			if (player == null) {
+				return;
+			}
+			playerLocation = player.getLocationInHyperspace();
+		}
+
+		long start = System.nanoTime();
+		long budget = (long) (frameBudgetMillis * 1000000f);
+		//Only made when something is actually built this frame, then shared by everything built in it.
+		MaSHyperspaceIndex index = null;
+		//The queued systems holding their spot in that index.
+		Set<MaSSystemBlueprint> reserved = null;
+		for (int i = 0; i < queued.size(); i++) {
+			MaSSystemBlueprint blueprint = (MaSSystemBlueprint) queued.get(i);
+			if (playerLocation != null) {
+				float dx = blueprint.hyperspaceX - playerLocation.x;
+				float dy = blueprint.hyperspaceY - playerLocation.y;
+				if (dx * dx + dy * dy > approachRange * approachRange) {
+					continue;
+				}
+			}
+
+			long before = System.nanoTime();
+			if (index == null) {
+				index = MaSHyperspaceIndex.fromSector(sector, systemRadius);
+				//Everything still queued keeps its spot, so a system that has to move doesn't land where a later one will go.
+				reserved = new HashSet<MaSSystemBlueprint>();
+				for (int q = 0; q < queued.size(); q++) {
+					MaSSystemBlueprint waiting = (MaSSystemBlueprint) queued.get(q);
+					try {
+						index.register(waiting.name, waiting.hyperspaceX, waiting.hyperspaceY, systemRadius, waiting.getEntityIds());
+						reserved.add(waiting);
+					} catch (IllegalArgumentException e) {
+						//Its spot, name or ids were taken since; place() sorts that out when its turn comes.
+					}
+				}
+			}
+			queued.remove(i--);
+			if (reserved.remove(blueprint)) {
+				index.release(blueprint.name, blueprint.hyperspaceX, blueprint.hyperspaceY, blueprint.getEntityIds());
+			}
+			//Moves the system if its spot was taken since, or skips it if its name or ids were.
+			MaSSystemBlueprint placed = MaSModPlugin.place(index, blueprint);
+			if (placed != null) {
+				MaSModPlugin.createSystem(sector, placed, backgrounds);
+				report(placed.name, (System.nanoTime() - before) / 1000000f);
+			}
+
+			if (System.nanoTime() - start >= budget) {
+				break;
+			}
+		}
+		if (queued.isEmpty()) {
+			backgrounds.close();
+			MaSStartupProfiler.report("buildQueue");
+		}
+	}
+
+	private void report(String name, float millis) {
+		if (log.isDebugEnabled()) {
+			log.debug("Built " + name + " in " + millis + " ms, " + queued.size() + " systems still queued");
+		}
+		if (listeners == null) {
+			return;
+		}
+		for (int i = 0; i < listeners.size(); i++) {
+			((Listener) listeners.get(i)).systemBuilt(name, millis, queued.size());
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares one list between every body that has the same surface conditions.
+ *
+ * Generated systems repeat the same few combinations ("very_hot" + "tectonic_activity", "no_atmosphere"...)
+ * over and over. Blueprints waiting in MaSBuildQueue are saved with the game, and the save only writes a shared
+ * list once, so interning keeps both memory and save files smaller.
+ *
+ * Safe to call from the planner's worker threads.
+ */
+public class MaSConditionSets {
+	private static final ConcurrentMap<String, List<String>> sets = new ConcurrentHashMap<String, List<String>>();
+
+	/**
+	 * The shared, unmodifiable list with these conditions. The order conditions were given in doesn't matter.
+	 */
+	public static List<String> intern(List<String> conditions) {
+		if (conditions.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<String> sorted = new ArrayList<String>(conditions);
+		Collections.sort(sorted);
+		StringBuilder key = new StringBuilder();
+		for (int i = 0; i < sorted.size(); i++) {
+			key.append((String) sorted.get(i)).append('|');
+		}
+
+		List<String> shared = (List<String>) sets.get(key.toString());
+		if (shared == null) {
+			List<String> created = Collections.unmodifiableList(sorted);
+			shared = (List<String>) sets.putIfAbsent(key.toString(), created);
+			if (shared == null) {
+				shared = created;
+			}
+		}
+		return shared;
+	}
+}
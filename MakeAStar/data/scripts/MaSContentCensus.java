@@ -0,0 +1,199 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.CustomCampaignEntityAPI;
+import com.fs.starfarer.api.campaign.JumpPointAPI;
+import com.fs.starfarer.api.campaign.PlanetAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.SectorEntityToken;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+import com.fs.starfarer.api.campaign.econ.MarketConditionAPI;
+
+/**
+ * Counts what each mod has added to the sector, and points out what could be stored more compactly.
+ *
+ * Mods that want to be counted tag the bodies they add (stars, planets, jump points, stations; not every asteroid)
+ * with CONTENT_TAG_PREFIX followed by their mod id, like "modcontent:makeAStar". MakeAMarket and TestPlanet
+ * do the same with their own ids, but spell the prefix out so they don't need this mod; keep them in step.
+ * The report, written to starsector.log as CSV, lists per mod and per kind of entity how many there are,
+ * how many have a market and how many conditions, names and descriptions they carry. After that it flags:
+ *  - strings with the same text stored more than once (names, ids, description ids)
+ *  - markets with the same conditions, which could share one list (see MaSConditionSets)
+ *  - markets with more conditions, or systems with more entities, than the limits below
+ *
+ * Byte counts are estimates from the string lengths, not measurements; for exact retained sizes,
+ * take a heap dump and look up the objects this report names.
+ */
+public class MaSContentCensus {
+	public static final String CONTENT_TAG_PREFIX = "modcontent:";
+	public static final int MANY_CONDITIONS = 12;
+	public static final int MANY_ENTITIES = 200;
+
+	private static final Logger log = Global.getLogger(MaSContentCensus.class);
+
+	//Per "mod,kind": entities, with market, conditions, strings, estimated string bytes.
+	private final Map<String, long[]> counts = new TreeMap<String, long[]>();
+	//Every string we've seen, by text, with the distinct copies of it.
+	private final Map<String, List<String>> strings = new HashMap<String, List<String>>();
+	//Markets by their sorted condition ids.
+	private final Map<String, List<String>> conditionSets = new HashMap<String, List<String>>();
+	private final List<String> oversized = new ArrayList<String>();
+
+	public static void report(SectorAPI sector) {
+		MaSContentCensus census = new MaSContentCensus();
+		List<StarSystemAPI> systems = sector.getStarSystems();
+		for (int i = 0; i < systems.size(); i++) {
+			census.count((StarSystemAPI) systems.get(i));
+		}
+		census.log();
+	}
+
+	private void count(StarSystemAPI system) {
+		List<SectorEntityToken> entities = system.getAllEntities();
+		boolean ours = false;
+		for (int i = 0; i < entities.size(); i++) {
+			SectorEntityToken entity = (SectorEntityToken) entities.get(i);
+			String mod = modOf(entity);
+			if (mod == null) {
+				continue;
+			}
+			ours = true;
+			long[] total = total(mod + "," + kindOf(entity));
+			total[0]++;
+			countString(total, entity.getId());
+			countString(total, entity.getName());
+			countString(total, entity.getCustomDescriptionId());
+
+			MarketAPI market = entity.getMarket();
+			if (market != null && market.getPrimaryEntity() == entity) {
+				total[1]++;
+				List<MarketConditionAPI> conditions = market.getConditions();
+				total[2] += conditions.size();
+				List<String> ids = new ArrayList<String>(conditions.size());
+				for (int c = 0; c < conditions.size(); c++) {
+					ids.add(((MarketConditionAPI) conditions.get(c)).getId());
+				}
+				Collections.sort(ids);
+				List<String> sharing = (List<String>) conditionSets.get(ids.toString());
+				if (sharing == null) {
+					sharing = new ArrayList<String>();
+					conditionSets.put(ids.toString(), sharing);
+				}
+				sharing.add(market.getId());
+				if (conditions.size() > MANY_CONDITIONS) {
+					oversized.add("market " + market.getId() + " has " + conditions.size() + " conditions");
+				}
+			}
+		}
+		if (ours && entities.size() > MANY_ENTITIES) {
+			oversized.add("system " + system.getBaseName() + " has " + entities.size() + " entities");
+		}
+	}
+
+	private void countString(long[] total, String text) {
+		if (text == null) {
+			return;
+		}
+		total[3]++;
+		total[4] += estimateBytes(text);
+		List<String> copies = (List<String>) strings.get(text);
+		if (copies == null) {
+			copies = new ArrayList<String>(1);
+			strings.put(text, copies);
+		}
+		//Same text, but is it the same String object?
+		for (int i = 0; i < copies.size(); i++) {
+			if (copies.get(i) == text) {
+				return;
+			}
+		}
+		copies.add(text);
+	}
+
+	private void log() {
+		StringBuilder csv = new StringBuilder("mod,kind,entities,withMarket,conditions,strings,estimatedStringBytes\n");
+		for (Iterator<String> keys = counts.keySet().iterator(); keys.hasNext();) {
+			String key = (String) keys.next();
+			long[] total = (long[]) counts.get(key);
+			csv.append(key);
+			for (int i = 0; i < total.length; i++) {
+				csv.append(',').append(total[i]);
+			}
+			csv.append('\n');
+		}
+
+		StringBuilder flags = new StringBuilder();
+		long duplicateBytes = 0;
+		int duplicateStrings = 0;
+		for (Iterator<List<String>> all = strings.values().iterator(); all.hasNext();) {
+			List<String> copies = (List<String>) all.next();
+			if (copies.size() > 1) {
+				duplicateStrings++;
+				duplicateBytes += (copies.size() - 1) * estimateBytes((String) copies.get(0));
+			}
+		}
+		if (duplicateStrings > 0) {
+			flags.append("duplicated strings: ").append(duplicateStrings).append(" texts stored more than once, about ")
+				.append(duplicateBytes).append(" bytes\n");
+		}
+		for (Iterator<List<String>> all = conditionSets.values().iterator(); all.hasNext();) {
+			List<String> markets = (List<String>) all.next();
+			if (markets.size() > 1) {
+				flags.append("duplicated condition lists: ").append(markets.size()).append(" markets have the same conditions, e.g. ")
+					.append((String) markets.get(0)).append('\n');
+			}
+		}
+		for (int i = 0; i < oversized.size(); i++) {
+			flags.append("oversized: ").append((String) oversized.get(i)).append('\n');
+		}
+		log.info("Content census\n" + csv + (flags.length() == 0 ? "nothing flagged" : flags.toString()));
+	}
+
+	private long[] total(String key) {
+		long[] total = (long[]) counts.get(key);
+		if (total == null) {
+			total = new long[5];
+			counts.put(key, total);
+		}
+		return total;
+	}
+
+	private static String modOf(SectorEntityToken entity) {
+		for (Iterator<String> tags = entity.getTags().iterator(); tags.hasNext();) {
+			String tag = (String) tags.next();
+			if (tag.startsWith(CONTENT_TAG_PREFIX)) {
+				return tag.substring(CONTENT_TAG_PREFIX.length());
+			}
+		}
+		return null;
+	}
+
+	private static String kindOf(SectorEntityToken entity) {
+		if (entity instanceof PlanetAPI) {
+			return ((PlanetAPI) entity).isStar() ? "star" : "planet";
+		}
+		if (entity instanceof JumpPointAPI) {
+			return "jumpPoint";
+		}
+		if (entity instanceof CustomCampaignEntityAPI) {
+			return "customEntity";
+		}
+		return "other";
+	}
+
+	//The game runs on Java 7: a String is about 40 bytes plus 2 per character.
+	private static long estimateBytes(String text) {
+		return 40 + 2L * text.length();
+	}
+}
@@ -0,0 +1,66 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.fs.starfarer.api.Global;
+
+/**
+ * Makes sure every description id the blueprints use is really in descriptions.csv.
+ *
+ * Quoted, multi-line fields make that file easy to break: one stray quote and every row after it
+ * silently becomes part of a description. setCustomDescriptionId() doesn't complain about an id it can't find,
+ * so we look the ids up ourselves while the game loads and report every missing one at once.
+ */
+public class MaSDescriptionCheck {
+	public static final String PATH = "data/strings/descriptions.csv";
+	public static final String CUSTOM = "CUSTOM";
+
+	public static void check(List<MaSSystemBlueprint> blueprints) throws Exception {
+		List<String> wanted = new ArrayList<String>();
+		for (int i = 0; i < blueprints.size(); i++) {
+			MaSSystemBlueprint blueprint = (MaSSystemBlueprint) blueprints.get(i);
+			addIfSet(wanted, blueprint.starDescriptionId);
+			for (int b = 0; b < blueprint.bodies.size(); b++) {
+				addIfSet(wanted, ((MaSSystemBlueprint.Body) blueprint.bodies.get(b)).descriptionId);
+			}
+		}
+		//Nothing to look up, so don't bother reading the file.
+		if (wanted.isEmpty()) {
+			return;
+		}
+
+		//The game parses the file (quotes, line breaks and all) and merges every mod's copy with the core one.
+		//We only keep the ids of CUSTOM rows, since those are the only ones setCustomDescriptionId() can use.
+		JSONArray rows = Global.getSettings().getMergedSpreadsheetDataForMod("id", PATH, "starsector-core");
+		Set<String> customIds = new HashSet<String>();
+		for (int i = 0; i < rows.length(); i++) {
+			JSONObject row = rows.getJSONObject(i);
+			if (CUSTOM.equals(row.optString("type"))) {
+				customIds.add(row.optString("id"));
+			}
+		}
+
+		List<String> missing = new ArrayList<String>();
+		for (int i = 0; i < wanted.size(); i++) {
+			String id = (String) wanted.get(i);
+			if (!customIds.contains(id) && !missing.contains(id)) {
+				missing.add(id);
+			}
+		}
+		if (!missing.isEmpty()) {
+			throw new RuntimeException(MaSSystemBlueprint.PATH + " uses description ids that have no CUSTOM row in " + PATH + ": " + missing);
+		}
+	}
+
+	private static void addIfSet(List<String> ids, String id) {
+		if (id != null) {
+			ids.add(id);
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.lwjgl.util.vector.Vector2f;
+
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.SectorEntityToken;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+
+/**
+ * Keeps track of where star systems sit in hyperspace, and which system names and entity ids are taken.
+ *
+ * Systems are sorted into a grid of square cells, so checking a spot only looks at the handful of cells around it
+ * instead of at every system in the sector. That keeps placing thousands of generated systems fast.
+ *
+ * Systems that are planned but not built yet (see MaSBuildQueue) are registered too, so the systems placed after them
+ * in the same onNewGame() keep clear of their spot, name and ids. The index only lives for that one call, though;
+ * nothing outside this mod knows about it, so MaSBuildQueue places each system again right before building it,
+ * in a new index that holds the sector as it is then plus the rest of the queue.
+ */
+public class MaSHyperspaceIndex {
+	private static class Entry {
+		final String name;
+		final float x;
+		final float y;
+		final float radius;
+
+		Entry(String name, float x, float y, float radius) {
+			this.name = name;
+			this.x = x;
+			this.y = y;
+			this.radius = radius;
+		}
+	}
+
+	//How many rings of candidate spots nearestFree() tries before giving up.
+	private static final int MAX_SEARCH_RINGS = 64;
+
+	private final float cellSize;
+	private final Map<Long, List<Entry>> cells = new HashMap<Long, List<Entry>>();
+	private final Set<String> systemNames = new HashSet<String>();
+	private final Set<String> entityIds = new HashSet<String>();
+	private float largestRadius = 0;
+
+	/**
+	 * @param cellSize roughly the spacing between systems; anything from half to twice that works well
+	 */
+	public MaSHyperspaceIndex(float cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Indexes every system that already exists, with the given radius around each.
+	 */
+	public static MaSHyperspaceIndex fromSector(SectorAPI sector, float systemRadius) {
+		MaSHyperspaceIndex index = new MaSHyperspaceIndex(systemRadius * 2);
+		List<StarSystemAPI> systems = sector.getStarSystems();
+		for (int i = 0; i < systems.size(); i++) {
+			StarSystemAPI system = (StarSystemAPI) systems.get(i);
+			Vector2f location = system.getLocation();
+			index.add(new Entry(system.getBaseName().toLowerCase(), location.x, location.y, systemRadius));
+			index.systemNames.add(system.getBaseName().toLowerCase());
+
+			List<SectorEntityToken> entities = system.getAllEntities();
+			for (int e = 0; e < entities.size(); e++) {
+				index.entityIds.add(((SectorEntityToken) entities.get(e)).getId());
+			}
+		}
+		return index;
+	}
+
+	public boolean isSystemNameTaken(String name) {
+		return systemNames.contains(name.toLowerCase());
+	}
+
+	public boolean isEntityIdTaken(String id) {
+		return entityIds.contains(id);
+	}
+
+	/**
+	 * Claims a spot, a system name and a set of entity ids.
+	 * Throws if any of them is already taken, without claiming anything.
+	 */
+	public void register(String name, float x, float y, float radius, List<String> ids) {
+		if (isSystemNameTaken(name)) {
+			throw new IllegalArgumentException("A star system named \"" + name + "\" already exists");
+		}
+		Set<String> seen = new HashSet<String>();
+		for (int i = 0; i < ids.size(); i++) {
+			String id = (String) ids.get(i);
+			if (isEntityIdTaken(id) || !seen.add(id)) {
+				throw new IllegalArgumentException("The entity id \"" + id + "\" in \"" + name + "\" is already in use");
+			}
+		}
+		if (overlaps(x, y, radius)) {
+			throw new IllegalArgumentException("\"" + name + "\" at " + x + ", " + y + " overlaps another star system");
+		}
+
+		add(new Entry(name, x, y, radius));
+		systemNames.add(name.toLowerCase());
+		entityIds.addAll(seen);
+	}
+
+	/**
+	 * Gives back a spot, name and ids claimed with register(), so that system can be placed again.
+	 */
+	public void release(String name, float x, float y, List<String> ids) {
+		List<Entry> entries = (List<Entry>) cells.get(Long.valueOf(key(cell(x), cell(y))));
+		if (entries != null) {
+			for (int e = 0; e < entries.size(); e++) {
+				Entry entry = (Entry) entries.get(e);
+				if (entry.x == x && entry.y == y && entry.name.equalsIgnoreCase(name)) {
+					entries.remove(e);
+					break;
+				}
+			}
+		}
+		systemNames.remove(name.toLowerCase());
+		entityIds.removeAll(ids);
+	}
+
+	/**
+	 * Whether a system of this radius at this spot would overlap any indexed system.
+	 */
+	public boolean overlaps(float x, float y, float radius) {
+		return findOverlap(x, y, radius) != null;
+	}
+
+	/**
+	 * The names of every indexed system whose center is within range of the given spot.
+	 */
+	public List<String> systemsWithin(float x, float y, float range) {
+		List<String> result = new ArrayList<String>();
+		int reach = (int) Math.ceil(range / cellSize);
+		int cx = cell(x);
+		int cy = cell(y);
+		for (int i = cx - reach; i <= cx + reach; i++) {
+			for (int j = cy - reach; j <= cy + reach; j++) {
+				List<Entry> entries = (List<Entry>) cells.get(Long.valueOf(key(i, j)));
+				if (entries == null) {
+					continue;
+				}
+				for (int e = 0; e < entries.size(); e++) {
+					Entry entry = (Entry) entries.get(e);
+					float dx = entry.x - x;
+					float dy = entry.y - y;
+					if (dx * dx + dy * dy <= range * range) {
+						result.add(entry.name);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The free spot closest to the one asked for, searching outwards in rings one cell apart.
+	 * Returns the spot itself if it's already free.
+	 */
+	public Vector2f nearestFree(float x, float y, float radius) {
+		if (!overlaps(x, y, radius)) {
+			return new Vector2f(x, y);
+		}
+		for (int ring = 1; ring <= MAX_SEARCH_RINGS; ring++) {
+			float distance = ring * cellSize;
+			//More candidates on the bigger rings, so they stay about one cell apart.
+			int candidates = 6 * ring;
+			Vector2f best = null;
+			float bestDistance = Float.MAX_VALUE;
+			for (int c = 0; c < candidates; c++) {
+				double angle = 2 * Math.PI * c / candidates;
+				float cx = x + (float) Math.cos(angle) * distance;
+				float cy = y + (float) Math.sin(angle) * distance;
+				if (overlaps(cx, cy, radius)) {
+					continue;
+				}
+				float dx = cx - x;
+				float dy = cy - y;
+				if (dx * dx + dy * dy < bestDistance) {
+					bestDistance = dx * dx + dy * dy;
+					best = new Vector2f(cx, cy);
+				}
+			}
+			if (best != null) {
+				return best;
+			}
+		}
+		throw new IllegalStateException("No free spot in hyperspace near " + x + ", " + y);
+	}
+
+	private Entry findOverlap(float x, float y, float radius) {
+		//Anything that could touch this circle is within this many cells of it.
+		int reach = (int) Math.ceil((radius + largestRadius) / cellSize);
+		int cx = cell(x);
+		int cy = cell(y);
+		for (int i = cx - reach; i <= cx + reach; i++) {
+			for (int j = cy - reach; j <= cy + reach; j++) {
+				List<Entry> entries = (List<Entry>) cells.get(Long.valueOf(key(i, j)));
+				if (entries == null) {
+					continue;
+				}
+				for (int e = 0; e < entries.size(); e++) {
+					Entry entry = (Entry) entries.get(e);
+					float dx = entry.x - x;
+					float dy = entry.y - y;
+					float minDistance = entry.radius + radius;
+					if (dx * dx + dy * dy < minDistance * minDistance) {
+						return entry;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private void add(Entry entry) {
+		Long key = Long.valueOf(key(cell(entry.x), cell(entry.y)));
+		List<Entry> entries = (List<Entry>) cells.get(key);
+		if (entries == null) {
+			entries = new ArrayList<Entry>(2);
+			cells.put(key, entries);
+		}
+		entries.add(entry);
+		largestRadius = Math.max(largestRadius, entry.radius);
+	}
+
+	private int cell(float coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private static long key(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+}
@@ -1,142 +1,278 @@
 package data.scripts;
 
-import java.awt.Color;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.lwjgl.util.vector.Vector2f;
 
 import com.fs.starfarer.api.BaseModPlugin;
 import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.campaign.CustomCampaignEntityAPI;
+import com.fs.starfarer.api.campaign.JumpPointAPI;
 import com.fs.starfarer.api.campaign.PlanetAPI;
 import com.fs.starfarer.api.campaign.SectorAPI;
 import com.fs.starfarer.api.campaign.SectorEntityToken;
 import com.fs.starfarer.api.campaign.StarSystemAPI;
-import com.fs.starfarer.api.impl.campaign.procgen.StarAge;
 import com.fs.starfarer.api.impl.campaign.procgen.StarSystemGenerator;
 import com.fs.starfarer.api.util.Misc;
 
-import com.fs.starfarer.api.impl.campaign.procgen.StarAge;
-import com.fs.starfarer.api.impl.campaign.procgen.StarSystemGenerator;
-
 import com.fs.starfarer.api.campaign.econ.MarketAPI;
-import com.fs.starfarer.api.impl.campaign.ids.Conditions;
 
 public class MaSModPlugin extends BaseModPlugin {
+	//Every star, planet, jump point and station this mod adds carries this tag, so MaSContentCensus can tell it apart from everyone else's.
+	public static final String CONTENT_TAG = MaSContentCensus.CONTENT_TAG_PREFIX + "makeAStar";
+
+	//The star systems described in data/config/mas_systems.json.
+	//They're read once when the game loads and reused for every new game.
+	private static List<MaSSystemBlueprint> blueprints;
+	private static MaSSystemPlanner.Settings generatorSettings;
+	//How much room every system gets in hyperspace, measured from its center.
+	private static float systemRadius;
+
+	private static final Logger log = Global.getLogger(MaSModPlugin.class);
+
+	@Override
+	public void onApplicationLoad() throws Exception {
+		//Turn on dev mode to see how long each step takes in starsector.log.
+		MaSStartupProfiler.setEnabled(Global.getSettings().isDevMode());
+		MaSStartupProfiler.start();
+
+		//Reading and checking the data file here means a mistake in it is reported on the loading screen.
+		JSONObject json = Global.getSettings().loadJSON(MaSSystemBlueprint.PATH);
+		blueprints = MaSSystemBlueprint.loadAll(json);
+		MaSDescriptionCheck.check(blueprints);
+		JSONObject generated = json.optJSONObject("generated");
+		generatorSettings = new MaSSystemPlanner.Settings(generated != null ? generated : new JSONObject());
+		JSONObject placement = json.optJSONObject("placement");
+		systemRadius = placement != null ? (float) placement.optDouble("systemRadius", 1000) : 1000;
+		JSONObject backgrounds = json.optJSONObject("backgrounds");
+		MaSBackgrounds.configure(backgrounds != null ? backgrounds : new JSONObject());
+
+		MaSStartupProfiler.stop("onApplicationLoad");
+		MaSStartupProfiler.report("onApplicationLoad");
+	}
+
     @Override
-    public void onNewGame() {	
+    public void onNewGame() {
+		MaSStartupProfiler.start();
 		SectorAPI sector = Global.getSector();
-		StarSystemAPI system = sector.createStarSystem("Wade's Star");
-		
+		//Everything already in the sector (including other mods' systems) goes into the index first.
+		MaSHyperspaceIndex index = MaSHyperspaceIndex.fromSector(sector, systemRadius);
+		//Sets each system's background once the player gets there.
+		MaSBackgrounds backgrounds = new MaSBackgrounds();
+		sector.addScript(backgrounds);
+		for (int i = 0; i < blueprints.size(); i++) {
+			MaSSystemBlueprint blueprint = place(index, (MaSSystemBlueprint) blueprints.get(i));
+			if (blueprint != null) {
+				createSystem(sector, blueprint, backgrounds);
+			}
+		}
+
+		//Generated systems are planned first (on every core, if there are many of them)
+		//and then built on the game thread: a few every frame, so starting the game doesn't hitch.
+		//The plans only depend on the settings and the sector seed, so the same seed always gets the same systems.
+		MaSStartupProfiler.start();
+		List<MaSSystemBlueprint> plans = MaSSystemPlanner.plan(generatorSettings, sector.getSeedString().hashCode());
+		MaSStartupProfiler.stop("MaSSystemPlanner.plan");
+		if (plans.isEmpty()) {
+			backgrounds.close();
+		} else {
+			MaSBuildQueue queue = new MaSBuildQueue(generatorSettings.frameBudgetMillis, generatorSettings.approachRange, backgrounds, systemRadius);
+			for (int i = 0; i < plans.size(); i++) {
+				MaSSystemBlueprint blueprint = place(index, (MaSSystemBlueprint) plans.get(i));
+				if (blueprint != null) {
+					queue.add(blueprint);
+				}
+			}
+			sector.addScript(queue);
+		}
+
+		MaSStartupProfiler.stop("onNewGame");
+		MaSStartupProfiler.report("onNewGame");
+    }
+
+	@Override
+	public void onGameLoad(boolean newGame) {
+		//In dev mode, write down what every mod has added to the sector so far. See MaSContentCensus.java.
+		if (Global.getSettings().isDevMode()) {
+			MaSStartupProfiler.start();
+			MaSContentCensus.report(Global.getSector());
+			MaSStartupProfiler.stop("MaSContentCensus");
+			MaSStartupProfiler.report("onGameLoad");
+		}
+	}
+
+	/**
+	 * Claims a spot in hyperspace for the system, plus its name and entity ids.
+	 * Another mod may already use the same spot (MakeAMarket also puts a "Wade's Star" at -400, -9400!).
+	 * A taken spot just moves the system to the nearest free one, but a taken name or id means we skip the system;
+	 * two entities with the same id would break anything that looks them up. So does finding no free spot at all.
+	 */
+	static MaSSystemBlueprint place(MaSHyperspaceIndex index, MaSSystemBlueprint blueprint) {
+		Vector2f spot;
+		MaSStartupProfiler.start();
+		try {
+			spot = index.nearestFree(blueprint.hyperspaceX, blueprint.hyperspaceY, systemRadius);
+			index.register(blueprint.name, spot.x, spot.y, systemRadius, blueprint.getEntityIds());
+		} catch (IllegalArgumentException e) {
+			log.error(e.getMessage() + ", so " + blueprint.name + " was not added");
+			return null;
+		} catch (IllegalStateException e) {
+			//Hyperspace is full around the spot we wanted.
+			log.error(e.getMessage() + ", so " + blueprint.name + " was not added");
+			return null;
+		} finally {
+			MaSStartupProfiler.stop("place");
+		}
+		if (spot.x != blueprint.hyperspaceX || spot.y != blueprint.hyperspaceY) {
+			log.info(blueprint.name + " was moved to " + spot.x + ", " + spot.y + " to keep clear of another star system");
+		}
+		return blueprint.withLocation(spot.x, spot.y);
+	}
+
+	/**
+	 * Build one star system from its blueprint, timed as a single step in dev mode.
+	 */
+	static void createSystem(SectorAPI sector, MaSSystemBlueprint blueprint, MaSBackgrounds backgrounds) {
+		MaSStartupProfiler.start();
+		try {
+			buildSystem(sector, blueprint, backgrounds);
+		} finally {
+			MaSStartupProfiler.stop("createSystem");
+		}
+	}
+
+	/**
+	 * Build one star system from its blueprint.
+	 * Open data/config/mas_systems.json alongside this method to see where each value comes from.
+	 */
+	private static void buildSystem(SectorAPI sector, MaSSystemBlueprint blueprint, MaSBackgrounds backgrounds) {
+		StarSystemAPI system = sector.createStarSystem(blueprint.name);
+
 		//It's by no means necessary to set a background to your star system.
 		//However, let's see how to do it.
-		//If you prefer a non-descript star field, simply disable this line.
-		system.setBackgroundTextureFilename("graphics/mas/backgrounds/test_background.jpg");
+		//If you prefer a non-descript star field, simply leave "background" out of the blueprint.
+		//Normally it's just system.setBackgroundTextureFilename(blueprint.background).
+		//Backgrounds are big, though, so MaSBackgrounds picks a copy sized for the screen
+		//and waits until the player actually enters the system to set it.
+		if (blueprint.background != null) {
+			backgrounds.add(system, blueprint.background);
+		}
 
 		//We'll use this particular API to instantiate the star.
-		//It allows us to set the position without having to also maintain an 
+		//It allows us to set the position without having to also maintain an
 		//external file to set the hyperspace position.
-		//This is convenient for this example.
-		//But if you add lots of stars with your mod and want to keep track of their positions
-		//relative to each other, the external settings file can also be convenient.
 		//PlanetAPI initStar(
 		//    id, //unique id for this star. This is how we retrieve it!
-		//    type, //You can refer to com.fs.starfarer.api.impl.campaign.ids.StarTypes or 
+		//    type, //You can refer to com.fs.starfarer.api.impl.campaign.ids.StarTypes or
 		//		use the actual values found in
 		//		\Starsector\starsector-core\data\config\planets.json
 		//    radius, //The rest are pretty obvious!
-		//    hyperspaceLocationX, 
-		//    hyperspaceLocationY, 
+		//    hyperspaceLocationX,
+		//    hyperspaceLocationY,
 		//    coronaSize) // corona radius, from star edge
-		
 		PlanetAPI star = system.initStar(
-			"wadestar", 
-			"star_orange", 
-			500, 
-			-400, 
-			-9400, 
-			250); 
-		
-		
+			blueprint.starId,
+			blueprint.starType,
+			blueprint.starRadius,
+			blueprint.hyperspaceX,
+			blueprint.hyperspaceY,
+			blueprint.coronaSize);
+
 		//This sets an ambient light color in entire system, affects all entities (planets, stars, etc).
 		//It is not required but can be used to make a spooky effect.
 		//Other times it makes things look horrible.
-		//Let's see how this color 0xCC0080 looks. It's my favorite color!
-		//0xCC0080 is a combined color in RGB hexadecimal notation.
-		//We need to provide each red, green, and blue value separately so it becomes: 
-		system.setLightColor(new Color(0xCC, 0x00, 0x80)); 
-
-		//Now let's add some random "entities" to the system.
-		//The StarSystemGenerator can do this for us and it will add anything you can imagine:
-		//accretion disks, more planets, moons, asteroids, etc. You never know!
-		//This function returns a number representing the outermost orbit of whatever was just added.
-		//This is handy if you want to continue adding stuff to the system in sequential orbits, which we'll do!
-		float outermostOrbitDistance = StarSystemGenerator.addOrbitingEntities(
-			system, 
-			star, 
-			StarAge.AVERAGE, //This setting determines what kind of potential entities are added.
-			1, 1, //Min-Max entities to add, here we'll just add 1 entity!
-			1000, //Radius to start adding at. Make sure it's greater than your star's actual radius! You can have planets inside a star otherwise (maybe cool???) 
-			1, //Name offset - next planet will be <system name> <roman numeral of this parameter + 1> if using system-based names.
-			false); // whether to use custom or system-name based names
-
-		//Let's add a hot Jupiter to the system. Simple as can be now.
-		PlanetAPI testPlanet1 = system.addPlanet("test1", star, "Aaarg", "gas_giant", 0, 229, outermostOrbitDistance + 600, 20);
-		Misc.initConditionMarket(testPlanet1);
-		
-		//Right now it has no actual surface conditions.
-		//Surface conditions are technically a subset of market conditions.
-		//This may be unintuitive at first glance, but what this means is even uninhabited planets
-		//necessarily have market conditions.
-		//To add planetary conditions therefore, we create a market.
-		//The market simply never gets beyond being hypothetical.
-		MarketAPI newMarket = Global.getFactory().createMarket("testPlanet1_marketId", testPlanet1.getName(), 0);
-		newMarket.setPlanetConditionMarketOnly(true); //This "market" only represents planet conditions.
-		newMarket.addCondition(Conditions.VERY_HOT); //It's a hot Jupiter so let's make it hot! 
-		newMarket.addCondition(Conditions.DENSE_ATMOSPHERE); //It's a gas giant, so let's make it gassy!
-		newMarket.setPrimaryEntity(testPlanet1); //Tell the "market" that it's on our planet.
-		testPlanet1.setMarket(newMarket); //Likewise, tell our planet that it has a "market".
-
-		//Here's another example:
-		PlanetAPI testPlanet2 = system.addPlanet("test2", testPlanet1, "Blaarg", "barren", 0, 50, 350, 4);
-		Misc.initConditionMarket(testPlanet2);
-
-		newMarket = Global.getFactory().createMarket("testPlanet2_marketId", testPlanet2.getName(), 0);
-		newMarket.setPlanetConditionMarketOnly(true);
-		newMarket.addCondition(Conditions.THIN_ATMOSPHERE); //This will be discover upon initial survey.
-		newMarket.addCondition(Conditions.ORE_SPARSE); //This will be discovered upon completing a planet survey!
-		newMarket.setPrimaryEntity(testPlanet2);
-		testPlanet2.setMarket(newMarket);
-		
-		//Once more let's add some random entities.
-		StarSystemGenerator.addOrbitingEntities(
-			system, 
-			star, 
-			StarAge.OLD, //Let's try old system entities this time.
-			0, 2, //Let's allow for the possibility of no new entities after Aaarg.
-			testPlanet1.getCircularOrbitRadius() + 600, //Here we grab Aaarg's orbit radius to figure out where to start adding from.
-			system.getPlanets().size(), //Let's start naming planets based off the number of planets already in this location.
-			false); // Again, let's use generic planet names.
+		if (blueprint.lightColor != null) {
+			system.setLightColor(blueprint.lightColor);
+		}
+
+		//Every planet we add is remembered by id so later bodies can orbit it (like Blaarg orbiting Aaarg).
+		Map<String, SectorEntityToken> added = new HashMap<String, SectorEntityToken>();
+		added.put(blueprint.starId, star);
+
+		//Keeps track of which orbits are taken, so nothing we add runs into anything else.
+		MaSOrbitAllocator orbits = new MaSOrbitAllocator(system);
+
+		for (int i = 0; i < blueprint.bodies.size(); i++) {
+			MaSSystemBlueprint.Body body = (MaSSystemBlueprint.Body) blueprint.bodies.get(i);
+
+			if (body.isRandom()) {
+				//Now let's add some random "entities" to the system.
+				//The StarSystemGenerator can do this for us and it will add anything you can imagine:
+				//accretion disks, more planets, moons, asteroids, etc. You never know!
+				float startRadius = body.usesOrbitGap() ? orbits.getOutermost(star) + body.orbitGap : body.orbitRadius;
+				//The generator rolls its dice with StarSystemGenerator.random, which is different every time.
+				//Lending it a Random seeded from the sector seed means the same seed always gets the same surprises.
+				Random previous = StarSystemGenerator.random;
+				StarSystemGenerator.random = new Random(MaSSystemPlanner.mix(sector.getSeedString().hashCode() * 31L + (blueprint.name + "#" + i).hashCode()));
+				try {
+					StarSystemGenerator.addOrbitingEntities(
+						system,
+						star,
+						body.age, //This setting determines what kind of potential entities are added.
+						body.minEntities, body.maxEntities, //Min-Max entities to add.
+						startRadius, //Radius to start adding at. Make sure it's greater than your star's actual radius!
+						system.getPlanets().size(), //Name offset - next planet will be <system name> <roman numeral of this parameter + 1>.
+						false); // whether to use custom or system-name based names
+				} finally {
+					StarSystemGenerator.random = previous;
+				}
+				//We don't know what was just added, so have the allocator look.
+				orbits.indexNewEntities(system);
+				continue;
+			}
+
+			SectorEntityToken focus = body.focusId == null ? star : (SectorEntityToken) added.get(body.focusId);
+			//An orbit gap continues past everything already around the star, so bodies are added in sequential orbits.
+			//An exact orbit radius is kept if it's free, otherwise the body moves out to the nearest free orbit.
+			float wantedOrbit = body.usesOrbitGap() ? orbits.getOutermost(star) + body.orbitGap + body.radius : body.orbitRadius;
+			float orbitRadius = orbits.allocate(focus, body.radius, wantedOrbit, 0);
+			PlanetAPI planet = system.addPlanet(body.id, focus, body.name, body.type, body.angle, body.radius, orbitRadius, body.period);
+			added.put(body.id, planet);
+			addConditions(planet, body);
+
+			//Finally, as an added bonus let's examine how to add custom descriptions to our star system.
+			//The game provides defaults based on the planet and star types we used above.
+			//But we can customize them!
+			//See the note at the end of this method.
+			if (body.descriptionId != null) {
+				planet.setCustomDescriptionId(body.descriptionId);
+			}
+		}
 
 		//To make the star appear correctly in the game it is necessary to add hyperspace points.
 		//This is the easiest way to handle it.
-		//In this case we want to make sure we add a fringe jump point or else no one will be able to leave 
+		//In this case we want to make sure we add a fringe jump point or else no one will be able to leave
 		//our star system without a transverse jump! So the second "true" is kind of important.
 		//autogenerateHyperspaceJumpPoints(
 		//	boolean generateEntrancesAtGasGiants, //Create jump point at our gas giants?
 		//	boolean generateFringeJumpPoint) //Create a jump point at the edge of the system?
-		system.autogenerateHyperspaceJumpPoints(true, true);
+		system.autogenerateHyperspaceJumpPoints(blueprint.jumpPointsAtGasGiants, blueprint.fringeJumpPoint);
 
-		//Finally, as an added bonus let's examine how to add custom descriptions to our star system.
-		//The game provides defaults based on the planet and star types we used above.
-		//But we can customize them!
-		//Unfortunatley, this means we need to add the custom strings in a separate .csv file.
+		//Everything in the system is ours, including whatever the generator added.
+		//Only the bodies worth counting get the tag: stars, planets, moons, jump points and custom entities like stations.
+		//An asteroid belt can hold hundreds of asteroids, and a tag on each of them would only cost memory and save space.
+		List<SectorEntityToken> entities = system.getAllEntities();
+		for (int i = 0; i < entities.size(); i++) {
+			SectorEntityToken entity = (SectorEntityToken) entities.get(i);
+			if (entity instanceof PlanetAPI || entity instanceof JumpPointAPI || entity instanceof CustomCampaignEntityAPI) {
+				entity.addTag(CONTENT_TAG);
+			}
+		}
+
+		if (blueprint.starDescriptionId != null) {
+			star.setCustomDescriptionId(blueprint.starDescriptionId);
+		}
+		//Unfortunatley, custom descriptions need the custom strings in a separate .csv file.
 		//This file is in: ../data/string/descriptions.csv
 		//(ie /Starsector/mods/MakeAStar/data/string/descriptions.csv)
 		//The .csv has 6 columns and can be edited with any text editor.
-		//The first column is the id, which we supply below.
-		star.setCustomDescriptionId("mas_star");
+		//The first column is the id, which we supply above.
 		//We can use the same description more than once!
-		testPlanet1.setCustomDescriptionId("mas_star");
-		//This is a separate description with a different id.
-		testPlanet2.setCustomDescriptionId("mas_arg");
 		//The second column is the type, which is CUSTOM.
 		//Any id that is used with setCustomDescriptionId needs to have the type CUSTOM.
 		//The third column is "text1", which for our planets and stars is the main description.
@@ -144,8 +280,26 @@ public class MaSModPlugin extends BaseModPlugin {
 		//The forth column is "text2", which is a title show when a player puts the mouse over the planet or star.
 		//This is optional and will override the more generic title the game provides by default.
 		//The fifth column is "text3", which is a description show when the player approachs the planet or star.
-		
+
 		//The .csv file contains an example of how to use carriage returns for formatting paragraphs.
 		//Use carriage returns with caution. It is very easy to mess up your .csv file if you get it wrong.
-    }
+	}
+
+	private static void addConditions(PlanetAPI planet, MaSSystemBlueprint.Body body) {
+		//Surface conditions are technically a subset of market conditions.
+		//This may be unintuitive at first glance, but what this means is even uninhabited planets
+		//necessarily have market conditions.
+		//Misc.initConditionMarket() gives the planet such a market, one that only represents planet conditions.
+		//The market simply never gets beyond being hypothetical (unless someone colonizes the planet).
+		Misc.initConditionMarket(planet);
+
+		//There's no need to create a second market of our own; we add our conditions to that one.
+		//Every market is kept in memory and written to the save file, so one per planet is plenty.
+		MarketAPI conditionMarket = planet.getMarket();
+		for (int i = 0; i < body.conditions.size(); i++) {
+			//Some conditions (like a thin atmosphere) are seen on the initial survey,
+			//others (like sparse ore) are discovered upon completing a planet survey!
+			conditionMarket.addCondition((String) body.conditions.get(i));
+		}
+	}
 }
@@ -0,0 +1,270 @@
+package data.scripts;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.fs.starfarer.api.impl.campaign.procgen.StarAge;
+
+/**
+ * A star system described by data instead of code.
+ *
+ * Blueprints are read from data/config/mas_systems.json and checked once, when the game loads.
+ * A typo in the file therefore shows up on the loading screen instead of halfway through starting a new game,
+ * and starting several new games in a row never reads the file again.
+ *
+ * Nothing in a blueprint can be changed after it is created, so the same blueprint can be used for any number of games.
+ */
+public class MaSSystemBlueprint {
+	public static final String PATH = "data/config/mas_systems.json";
+
+	public static final String KIND_PLANET = "planet";
+	public static final String KIND_RANDOM = "random";
+
+	/**
+	 * One step of building the system: either a hand-placed planet or a batch of random entities from the StarSystemGenerator.
+	 * An orbit is given either as a radius around the focus, or as a gap past everything orbiting the star so far.
+	 */
+	public static class Body {
+		public final String kind;
+		public final String id; //planets only
+		public final String name; //planets only
+		public final String type; //planets only
+		public final String focusId; //null means the star
+		public final float angle;
+		public final float radius;
+		public final float orbitRadius; //used when orbitGap is negative
+		public final float orbitGap;
+		public final float period;
+		public final List<String> conditions;
+		public final String descriptionId; //may be null
+		public final StarAge age; //random only
+		public final int minEntities; //random only
+		public final int maxEntities; //random only
+
+		public Body(String kind, String id, String name, String type, String focusId,
+				float angle, float radius, float orbitRadius, float orbitGap, float period,
+				List<String> conditions, String descriptionId, StarAge age, int minEntities, int maxEntities) {
+			this.kind = kind;
+			this.id = id;
+			this.name = name;
+			this.type = type;
+			this.focusId = focusId;
+			this.angle = angle;
+			this.radius = radius;
+			this.orbitRadius = orbitRadius;
+			this.orbitGap = orbitGap;
+			this.period = period;
+			this.conditions = MaSConditionSets.intern(conditions);
+			this.descriptionId = descriptionId;
+			this.age = age;
+			this.minEntities = minEntities;
+			this.maxEntities = maxEntities;
+		}
+
+		public boolean isRandom() {
+			return KIND_RANDOM.equals(kind);
+		}
+
+		public boolean usesOrbitGap() {
+			return orbitGap >= 0;
+		}
+	}
+
+	public final String name;
+	public final String background; //may be null
+	public final Color lightColor; //may be null
+	public final float hyperspaceX;
+	public final float hyperspaceY;
+	public final String starId;
+	public final String starType;
+	public final float starRadius;
+	public final float coronaSize;
+	public final String starDescriptionId; //may be null
+	public final List<Body> bodies;
+	public final boolean jumpPointsAtGasGiants;
+	public final boolean fringeJumpPoint;
+
+	public MaSSystemBlueprint(String name, String background, Color lightColor, float hyperspaceX, float hyperspaceY,
+			String starId, String starType, float starRadius, float coronaSize, String starDescriptionId,
+			List<Body> bodies, boolean jumpPointsAtGasGiants, boolean fringeJumpPoint) {
+		this.name = name;
+		this.background = background;
+		this.lightColor = lightColor;
+		this.hyperspaceX = hyperspaceX;
+		this.hyperspaceY = hyperspaceY;
+		this.starId = starId;
+		this.starType = starType;
+		this.starRadius = starRadius;
+		this.coronaSize = coronaSize;
+		this.starDescriptionId = starDescriptionId;
+		this.bodies = Collections.unmodifiableList(new ArrayList<Body>(bodies));
+		this.jumpPointsAtGasGiants = jumpPointsAtGasGiants;
+		this.fringeJumpPoint = fringeJumpPoint;
+		validate();
+	}
+
+	/**
+	 * The same system somewhere else in hyperspace.
+	 */
+	public MaSSystemBlueprint withLocation(float x, float y) {
+		if (x == hyperspaceX && y == hyperspaceY) {
+			return this;
+		}
+		return new MaSSystemBlueprint(name, background, lightColor, x, y,
+			starId, starType, starRadius, coronaSize, starDescriptionId,
+			bodies, jumpPointsAtGasGiants, fringeJumpPoint);
+	}
+
+	/**
+	 * The ids of the star and every hand-placed planet. Randomly generated bodies get their ids from the game.
+	 */
+	public List<String> getEntityIds() {
+		List<String> ids = new ArrayList<String>();
+		ids.add(starId);
+		for (int i = 0; i < bodies.size(); i++) {
+			Body body = (Body) bodies.get(i);
+			if (!body.isRandom()) {
+				ids.add(body.id);
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Catches the mistakes that would otherwise crash the game (or quietly misbehave) once the system is built.
+	 */
+	private void validate() {
+		Set<String> ids = new HashSet<String>();
+		ids.add(starId);
+		for (int i = 0; i < bodies.size(); i++) {
+			Body body = (Body) bodies.get(i);
+			if (body.isRandom()) {
+				if (body.minEntities < 0 || body.maxEntities < body.minEntities) {
+					throw new RuntimeException(name + ": random body " + i + " has min/max " + body.minEntities + "/" + body.maxEntities);
+				}
+			} else if (KIND_PLANET.equals(body.kind)) {
+				if (!ids.add(body.id)) {
+					throw new RuntimeException(name + ": the id \"" + body.id + "\" is used more than once");
+				}
+				//A planet can only orbit something that was added before it.
+				if (body.focusId != null && !ids.contains(body.focusId)) {
+					throw new RuntimeException(name + ": \"" + body.id + "\" orbits \"" + body.focusId + "\", which is not defined before it");
+				}
+			} else {
+				throw new RuntimeException(name + ": unknown body kind \"" + body.kind + "\"");
+			}
+			//An orbit gap only makes sense around the star, where we keep track of the outermost orbit.
+			if (body.usesOrbitGap() && body.focusId != null) {
+				throw new RuntimeException(name + ": \"" + body.id + "\" uses orbitGap but does not orbit the star");
+			}
+		}
+	}
+
+	/**
+	 * Reads every hand-made blueprint in the contents of {@link #PATH}. Meant to be called once from onApplicationLoad().
+	 */
+	public static List<MaSSystemBlueprint> loadAll(JSONObject json) throws Exception {
+		JSONArray systems = json.getJSONArray("systems");
+		List<MaSSystemBlueprint> result = new ArrayList<MaSSystemBlueprint>();
+		for (int i = 0; i < systems.length(); i++) {
+			result.add(fromJSON(systems.getJSONObject(i)));
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	private static MaSSystemBlueprint fromJSON(JSONObject json) throws Exception {
+		String name = json.getString("name");
+
+		Color lightColor = null;
+		JSONArray rgb = json.optJSONArray("lightColor");
+		if (rgb != null) {
+			lightColor = new Color(rgb.getInt(0), rgb.getInt(1), rgb.getInt(2));
+		}
+
+		JSONArray location = json.getJSONArray("hyperspaceLocation");
+		JSONObject star = json.getJSONObject("star");
+
+		List<Body> bodies = new ArrayList<Body>();
+		JSONArray bodiesJson = json.optJSONArray("bodies");
+		if (bodiesJson != null) {
+			for (int i = 0; i < bodiesJson.length(); i++) {
+				bodies.add(bodyFromJSON(bodiesJson.getJSONObject(i)));
+			}
+		}
+
+		JSONObject jumpPoints = json.optJSONObject("jumpPoints");
+		boolean atGasGiants = jumpPoints == null || jumpPoints.optBoolean("gasGiants", true);
+		//Without a fringe jump point nobody can leave the system without a transverse jump, so it defaults to on.
+		boolean fringe = jumpPoints == null || jumpPoints.optBoolean("fringe", true);
+
+		return new MaSSystemBlueprint(
+			name,
+			optString(json, "background"),
+			lightColor,
+			(float) location.getDouble(0),
+			(float) location.getDouble(1),
+			star.getString("id"),
+			star.getString("type"),
+			(float) star.getDouble("radius"),
+			(float) star.optDouble("corona", 0),
+			optString(star, "description"),
+			bodies,
+			atGasGiants,
+			fringe);
+	}
+
+	private static Body bodyFromJSON(JSONObject json) throws Exception {
+		String kind = json.getString("kind");
+
+		List<String> conditions = new ArrayList<String>();
+		JSONArray conditionsJson = json.optJSONArray("conditions");
+		if (conditionsJson != null) {
+			for (int i = 0; i < conditionsJson.length(); i++) {
+				conditions.add(conditionsJson.getString(i));
+			}
+		}
+
+		//Exactly one of the two ways to place an orbit has to be given.
+		boolean hasGap = json.has("orbitGap");
+		if (hasGap == json.has("orbitRadius")) {
+			throw new RuntimeException(PATH + ": every body needs either \"orbitGap\" or \"orbitRadius\" (" + json + ")");
+		}
+
+		if (KIND_RANDOM.equals(kind)) {
+			return new Body(kind, null, null, null, null,
+				0, 0,
+				(float) json.optDouble("orbitRadius", 0),
+				hasGap ? (float) json.getDouble("orbitGap") : -1,
+				0,
+				conditions, null,
+				StarAge.valueOf(json.getString("age")),
+				json.getInt("min"),
+				json.getInt("max"));
+		}
+
+		return new Body(kind,
+			json.getString("id"),
+			json.getString("name"),
+			json.getString("type"),
+			optString(json, "focus"),
+			(float) json.optDouble("angle", 0),
+			(float) json.getDouble("radius"),
+			(float) json.optDouble("orbitRadius", 0),
+			hasGap ? (float) json.getDouble("orbitGap") : -1,
+			(float) json.getDouble("period"),
+			conditions,
+			optString(json, "description"),
+			null, 0, 0);
+	}
+
+	private static String optString(JSONObject json, String key) {
+		return json.has(key) ? json.optString(key) : null;
+	}
+}
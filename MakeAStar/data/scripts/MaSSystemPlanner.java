@@ -0,0 +1,213 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.json.JSONObject;
+
+import com.fs.starfarer.api.impl.campaign.ids.Conditions;
+
+/**
+ * Plans procedurally generated star systems as {@link MaSSystemBlueprint}s.
+ *
+ * Planning never touches the sector; it only decides stars, orbits, planet types, conditions and names.
+ * That makes it safe to plan many systems at once on every core, and leave the actual building
+ * (which must happen on the game thread) to MaSModPlugin.createSystem().
+ *
+ * Each system gets its own Random seeded from the sector seed and the system's index,
+ * so the same seed always produces the same sector no matter how many threads did the planning.
+ */
+public class MaSSystemPlanner {
+	private static final String[] STAR_TYPES = {"star_yellow", "star_orange", "star_red_dwarf", "star_white"};
+	private static final float[] STAR_RADII = {500, 450, 300, 400};
+
+	private static final String[] PLANET_TYPES = {"barren", "lava", "lava_minor", "frozen", "rocky_ice", "rocky_metallic", "toxic", "desert", "gas_giant", "ice_giant"};
+	private static final float[] PLANET_RADII = {90, 120, 90, 120, 110, 110, 130, 130, 250, 230};
+	//Surface conditions for each planet type. The first one is always applied, the rest are a coin flip.
+	private static final String[][] PLANET_CONDITIONS = {
+		{Conditions.NO_ATMOSPHERE},
+		{Conditions.VERY_HOT, Conditions.TECTONIC_ACTIVITY},
+		{Conditions.VERY_HOT, Conditions.THIN_ATMOSPHERE},
+		{Conditions.VERY_COLD},
+		{Conditions.COLD, Conditions.THIN_ATMOSPHERE},
+		{Conditions.NO_ATMOSPHERE},
+		{Conditions.TOXIC_ATMOSPHERE, Conditions.HOT},
+		{Conditions.HOT},
+		{Conditions.DENSE_ATMOSPHERE, Conditions.HIGH_GRAVITY},
+		{Conditions.DENSE_ATMOSPHERE, Conditions.VERY_COLD},
+	};
+	private static final String[] RESOURCES = {Conditions.ORE_SPARSE, Conditions.ORE_MODERATE, Conditions.RARE_ORE_SPARSE, Conditions.VOLATILES_TRACE, Conditions.ORGANICS_TRACE};
+
+	private static final String[] ROMAN = {"I", "II", "III", "IV", "V", "VI", "VII", "VIII", "IX", "X"};
+
+	/**
+	 * The "generated" section of data/config/mas_systems.json.
+	 */
+	public static class Settings {
+		public final int count;
+		public final String namePrefix;
+		public final float centerX;
+		public final float centerY;
+		public final float spread;
+		public final int minPlanets;
+		public final int maxPlanets;
+		public final int threads; //0 means one per core
+		public final float frameBudgetMillis;
+		public final float approachRange; //0 builds everything right away, without waiting for the player
+
+		public Settings(JSONObject json) throws Exception {
+			count = json.optInt("count", 0);
+			namePrefix = json.optString("namePrefix", "Wade's Reach");
+			centerX = (float) json.optDouble("centerX", 0);
+			centerY = (float) json.optDouble("centerY", 0);
+			spread = (float) json.optDouble("spread", 10000);
+			minPlanets = json.optInt("minPlanets", 1);
+			maxPlanets = Math.min(json.optInt("maxPlanets", 5), ROMAN.length);
+			threads = json.optInt("threads", 0);
+			frameBudgetMillis = (float) json.optDouble("frameBudgetMillis", 4);
+			approachRange = (float) json.optDouble("approachRange", 5000);
+			if (count < 0 || minPlanets < 0 || maxPlanets < minPlanets) {
+				throw new RuntimeException(MaSSystemBlueprint.PATH + ": bad \"generated\" settings " + json);
+			}
+		}
+	}
+
+	/**
+	 * Plans every generated system. The result is in index order and only depends on the settings and the seed.
+	 */
+	public static List<MaSSystemBlueprint> plan(final Settings settings, final long seed) {
+		if (settings.count == 0) {
+			return Collections.emptyList();
+		}
+
+		final MaSSystemBlueprint[] plans = new MaSSystemBlueprint[settings.count];
+		int threads = settings.threads > 0 ? settings.threads : Runtime.getRuntime().availableProcessors();
+		if (threads <= 1) {
+			for (int i = 0; i < plans.length; i++) {
+				plans[i] = planSystem(settings, seed, i);
+			}
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				pool.invoke(new PlanTask(settings, seed, plans, 0, plans.length));
+			} finally {
+				pool.shutdown();
+			}
+		}
+		return Collections.unmodifiableList(new ArrayList<MaSSystemBlueprint>(Arrays.asList(plans)));
+	}
+
+	/**
+	 * Splits the index range in half until it's small enough to plan directly.
+	 * Every task writes only its own slots of the shared array, so no locking is needed.
+	 */
+	private static class PlanTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private static final int DIRECT_THRESHOLD = 8;
+
+		private final Settings settings;
+		private final long seed;
+		private final MaSSystemBlueprint[] plans;
+		private final int from;
+		private final int to;
+
+		PlanTask(Settings settings, long seed, MaSSystemBlueprint[] plans, int from, int to) {
+			this.settings = settings;
+			this.seed = seed;
+			this.plans = plans;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= DIRECT_THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					plans[i] = planSystem(settings, seed, i);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new PlanTask(settings, seed, plans, from, middle), new PlanTask(settings, seed, plans, middle, to));
+		}
+	}
+
+	/**
+	 * Plans a single system. Only reads its arguments and the constant tables above.
+	 */
+	static MaSSystemBlueprint planSystem(Settings settings, long seed, int index) {
+		Random random = new Random(mix(seed + index * 0x9E3779B97F4A7C15L));
+
+		String name = settings.namePrefix + " " + (index + 1);
+		String idPrefix = "mas_gen" + index;
+
+		int starType = random.nextInt(STAR_TYPES.length);
+		float starRadius = STAR_RADII[starType];
+
+		float x = settings.centerX + (random.nextFloat() * 2 - 1) * settings.spread;
+		float y = settings.centerY + (random.nextFloat() * 2 - 1) * settings.spread;
+
+		List<MaSSystemBlueprint.Body> bodies = new ArrayList<MaSSystemBlueprint.Body>();
+		int planets = settings.minPlanets + random.nextInt(settings.maxPlanets - settings.minPlanets + 1);
+		float orbit = starRadius;
+		for (int i = 0; i < planets; i++) {
+			int type = random.nextInt(PLANET_TYPES.length);
+			float radius = PLANET_RADII[type] * (0.8f + random.nextFloat() * 0.4f);
+			orbit += radius + 600 + random.nextFloat() * 900;
+
+			List<String> conditions = new ArrayList<String>();
+			String[] typeConditions = PLANET_CONDITIONS[type];
+			for (int c = 0; c < typeConditions.length; c++) {
+				if (c == 0 || random.nextBoolean()) {
+					conditions.add(typeConditions[c]);
+				}
+			}
+			if (random.nextFloat() < 0.5f) {
+				conditions.add(RESOURCES[random.nextInt(RESOURCES.length)]);
+			}
+
+			bodies.add(new MaSSystemBlueprint.Body(
+				MaSSystemBlueprint.KIND_PLANET,
+				idPrefix + "_planet" + i,
+				name + " " + ROMAN[i],
+				PLANET_TYPES[type],
+				null,
+				random.nextFloat() * 360,
+				radius,
+				orbit,
+				-1,
+				//Outer planets take longer to go around.
+				orbit / 20f + random.nextFloat() * 20,
+				conditions,
+				null,
+				null, 0, 0));
+			orbit += radius;
+		}
+
+		return new MaSSystemBlueprint(
+			name,
+			null,
+			null,
+			x, y,
+			idPrefix + "_star",
+			STAR_TYPES[starType],
+			starRadius,
+			starRadius / 2,
+			null,
+			bodies,
+			true,
+			true);
+	}
+
+	//SplitMix64 finalizer. Neighbouring indexes would otherwise give java.util.Random very similar seeds.
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
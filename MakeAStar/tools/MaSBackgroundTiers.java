@@ -0,0 +1,103 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Writes smaller copies of star system backgrounds, one for every size in "backgrounds"/"tiers"
+ * of data/config/mas_systems.json. MaSBackgrounds.java picks the one that fits the player's screen.
+ *
+ * This isn't part of the mod; the game never loads it. Run it from the MakeAStar folder whenever a background changes:
+ *   java tools/MaSBackgroundTiers.java 1024,1536 graphics/mas/backgrounds/test_background.jpg
+ * Each size is the length of the longer side. graphics/mas/backgrounds/test_background.jpg at 1024
+ * becomes graphics/mas/backgrounds/test_background_1024.jpg. Needs no display, so it runs on a build server too.
+ */
+public class MaSBackgroundTiers {
+	private static final float JPEG_QUALITY = 0.9f;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("usage: java tools/MaSBackgroundTiers.java <size,size,...> <image> [<image>...]");
+			System.exit(1);
+		}
+		System.setProperty("java.awt.headless", "true");
+
+		String[] sizes = args[0].split(",");
+		for (int i = 1; i < args.length; i++) {
+			File source = new File(args[i]);
+			BufferedImage image = ImageIO.read(source);
+			if (image == null) {
+				throw new IllegalArgumentException(source + " is not an image ImageIO can read");
+			}
+			for (int s = 0; s < sizes.length; s++) {
+				int size = Integer.parseInt(sizes[s].trim());
+				int longest = Math.max(image.getWidth(), image.getHeight());
+				if (size >= longest) {
+					System.out.println(source + " is only " + longest + "px, skipping " + size);
+					continue;
+				}
+				File target = tierFile(source, size);
+				write(scale(image, size), target);
+				System.out.println(target + ": " + target.length() + " bytes (" + source.length() + " full size)");
+			}
+		}
+	}
+
+	static File tierFile(File source, int size) {
+		String name = source.getName();
+		int dot = name.lastIndexOf('.');
+		return new File(source.getParentFile(), name.substring(0, dot) + "_" + size + name.substring(dot));
+	}
+
+	/**
+	 * Halves the image until the next step would go below the target, then does the last step.
+	 * One big bilinear jump from 2048 to 512 would skip most of the pixels and shimmer.
+	 */
+	private static BufferedImage scale(BufferedImage image, int size) {
+		float ratio = size / (float) Math.max(image.getWidth(), image.getHeight());
+		int width = Math.max(1, Math.round(image.getWidth() * ratio));
+		int height = Math.max(1, Math.round(image.getHeight() * ratio));
+
+		BufferedImage current = image;
+		while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+			current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+		}
+		if (current.getWidth() != width || current.getHeight() != height) {
+			current = draw(current, width, height);
+		}
+		return current;
+	}
+
+	private static BufferedImage draw(BufferedImage image, int width, int height) {
+		BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = scaled.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.drawImage(image, 0, 0, width, height, null);
+		g.dispose();
+		return scaled;
+	}
+
+	private static void write(BufferedImage image, File target) throws Exception {
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+		ImageWriter writer = writers.next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(JPEG_QUALITY);
+		ImageOutputStream out = ImageIO.createImageOutputStream(target);
+		try {
+			writer.setOutput(out);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			out.close();
+			writer.dispose();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package data.scripts;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fs.starfarer.api.campaign.PlanetAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.SectorEntityToken;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+
+/**
+ * Looks up star systems and planets by id once, then hands back the same objects on every later request.
+ *
+ * Asking the sector for a system by name, and then the system for an entity by id, means searching each time.
+ * That's nothing for one lookup, but it adds up when many plugins look up the same handful of planets.
+ * A cached entity that has since been removed from its system is dropped and looked up again.
+ *
+ * Meant to live for one pass of set-up code (like onNewGame()), not to be kept in the save.
+ */
+public class TPEntityRegistry {
+	private final SectorAPI sector;
+	private final Map<String, StarSystemAPI> systems = new HashMap<String, StarSystemAPI>();
+	//Entity ids are looked up per system, so finding one that's already cached doesn't build a new key.
+	private final Map<StarSystemAPI, Map<String, SectorEntityToken>> entities = new HashMap<StarSystemAPI, Map<String, SectorEntityToken>>();
+
+	public TPEntityRegistry(SectorAPI sector) {
+		this.sector = sector;
+	}
+
+	/**
+	 * The star system with this name, or null if there is none.
+	 */
+	public StarSystemAPI getSystem(String name) {
+		StarSystemAPI system = (StarSystemAPI) systems.get(name);
+		if (system == null) {
+			system = sector.getStarSystem(name);
+			if (system != null) {
+				systems.put(name, system);
+			}
+		}
+		return system;
+	}
+
+	/**
+	 * The entity with this id in the named system, or null if there is none.
+	 */
+	public SectorEntityToken getEntity(String systemName, String id) {
+		StarSystemAPI system = getSystem(systemName);
+		if (system == null) {
+			return null;
+		}
+		Map<String, SectorEntityToken> cached = (Map<String, SectorEntityToken>) entities.get(system);
+		if (cached == null) {
+			cached = new HashMap<String, SectorEntityToken>();
+			entities.put(system, cached);
+		}
+		SectorEntityToken entity = (SectorEntityToken) cached.get(id);
+		//An entity that was removed is no longer in its system; forget it and look again.
+		if (entity != null && entity.getContainingLocation() != system) {
+			cached.remove(id);
+			entity = null;
+		}
+		if (entity == null) {
+			entity = system.getEntityById(id);
+			if (entity != null) {
+				cached.put(id, entity);
+			}
+		}
+		return entity;
+	}
+
+	/**
+	 * The planet with this id in the named system.
+	 * Throws if the entity exists but isn't a planet, rather than failing later with a confusing ClassCastException.
+	 */
+	public PlanetAPI getPlanet(String systemName, String id) {
+		SectorEntityToken entity = getEntity(systemName, id);
+		if (entity != null && !(entity instanceof PlanetAPI)) {
+			throw new IllegalArgumentException(id + " in " + systemName + " is not a planet");
+		}
+		return (PlanetAPI) entity;
+	}
+
+	/**
+	 * The market on the entity with this id in the named system, or null if it has none.
+	 */
+	public MarketAPI getMarket(String systemName, String id) {
+		SectorEntityToken entity = getEntity(systemName, id);
+		return entity == null ? null : entity.getMarket();
+	}
+
+	/**
+	 * Removes an entity from its system and from the registry in one go.
+	 */
+	public void remove(SectorEntityToken entity) {
+		Map<String, SectorEntityToken> cached = (Map<String, SectorEntityToken>) entities.get(entity.getContainingLocation());
+		if (cached != null) {
+			for (Iterator<SectorEntityToken> it = cached.values().iterator(); it.hasNext();) {
+				if (it.next() == entity) {
+					it.remove();
+				}
+			}
+		}
+		entity.getContainingLocation().removeEntity(entity);
+	}
+}
@@ -9,8 +9,8 @@ import com.fs.starfarer.api.campaign.SectorEntityToken;
 import com.fs.starfarer.api.campaign.StarSystemAPI;
 import com.fs.starfarer.api.util.Misc;
 
-//Additionally required for Example 2:
-import com.fs.starfarer.api.campaign.PlanetSpecAPI;
+//Additionally required for Example 3:
+import java.util.List;
 
 /**
  * This mod demonstrates the bare-minimum necessary code/scripting required to add a planet to an existing star system.
@@ -24,6 +24,19 @@ import com.fs.starfarer.api.campaign.PlanetSpecAPI;
  * TPModPlugin.java is a "class" file. It will be compiled by the game (ie Java) into byte-code (an actual .class file).
  */
 public class TPModPlugin extends BaseModPlugin {
+	//Every planet this mod adds carries this tag, so MakeAStar's content census can count it.
+	//Tags are just words stuck on an entity; anyone can look for them later.
+	//The census looks for tags starting with "modcontent:" (MaSContentCensus.CONTENT_TAG_PREFIX in MakeAStar).
+	//We write it out ourselves so this mod still works without MakeAStar, so keep the two the same.
+	public static final String CONTENT_TAG = "modcontent:testPlanet";
+
+	@Override
+	public void onApplicationLoad() throws Exception {
+		//TPStartupProfiler measures how long onNewGame() takes, and Example 2 within it.
+		//It only does anything in dev mode, where it writes its results to starsector.log.
+		TPStartupProfiler.setEnabled(Global.getSettings().isDevMode());
+	}
+
 	@Override
 	/**
 	 * onNewGame() is the standard place to put planet and star creation logic.
@@ -32,50 +45,100 @@ public class TPModPlugin extends BaseModPlugin {
 	 * ...but beyond the scope of this example.
 	 */
 	public void onNewGame() {		
-		//--------------------------------------------------
-		// Example 1
-		//--------------------------------------------------
-		//There's only one StarSector, so it's accessed this way:
-		SectorAPI sector = Global.getSector();
-		//There are many star systems, though, and they are retrieved using their id, which happens to often be their name.
-		StarSystemAPI system = sector.getStarSystem("Corvus");
-		//Each star system has only one central star (other stars would be satellites just like the planets).
-		//So this is how you get the singular star at the center of the star system.
-		//...nebulae and the like are another matter! Let's stay focused.
-		SectorEntityToken star = system.getStar();
+		TPStartupProfiler.start();
+		//Updating orbits is only worth doing once we're done adding things. More on that in Example 1.
+		TPOrbitUpdates.begin();
+		try {
+			//--------------------------------------------------
+			// Example 1
+			//--------------------------------------------------
+			//There's only one StarSector, so it's accessed this way:
+			SectorAPI sector = Global.getSector();
+			//There are many star systems, though, and they are retrieved using their id, which happens to often be their name.
+			//Finding a system (or a planet in it) means searching for it. Rather than searching for Corvus every time we need it,
+			//TPEntityRegistry searches once and remembers what it found.
+			TPEntityRegistry handles = new TPEntityRegistry(sector);
+			StarSystemAPI system = handles.getSystem("Corvus");
+			//Each star system has only one central star (other stars would be satellites just like the planets).
+			//So this is how you get the singular star at the center of the star system.
+			//...nebulae and the like are another matter! Let's stay focused.
+			SectorEntityToken star = system.getStar();
 		
-		//This is the most straightforward way to add a planet to an existing star system.
-		//Note that we tell the planet what to orbit in the second argument.
-		//In this case it's the star we retrieved above... but it could be another planet or any other SectorEntityToken in the star system.
-		//For now, let's keep it simple.
-		PlanetAPI testPlanet = system.addPlanet("testPlanetId", star, "Testulon", "lava_minor", 240, 120, 2000, 120);
+			//Corvus already has planets, stations and jump points in orbit.
+			//If we just picked an orbit radius, our planet could land right on top of one of them!
+			//TPOrbitAllocator keeps track of which orbits are taken and hands out free ones.
+			TPOrbitAllocator orbits = new TPOrbitAllocator(system);
+			//Ask for the first free orbit at or beyond 2000 that fits a planet of radius 120 with 100 to spare on either side.
+			float orbitRadius = orbits.allocate(star, 120, 2000, 100);
+
+			//This is the most straightforward way to add a planet to an existing star system.
+			//Note that we tell the planet what to orbit in the second argument.
+			//In this case it's the star we retrieved above... but it could be another planet or any other SectorEntityToken in the star system.
+			//For now, let's keep it simple.
+			PlanetAPI testPlanet = system.addPlanet("testPlanetId", star, "Testulon", "lava_minor", 240, 120, orbitRadius, 120);
+			testPlanet.addTag(CONTENT_TAG);
 		
-		//This is necessary to address an NPE (Null Pointer Exception) that occurs in the game.
-		//It should not be necessary for unremarkable planets such as the one in this tutorial starting from version 0.9.
-		Misc.initConditionMarket(testPlanet);
+			//This is necessary to address an NPE (Null Pointer Exception) that occurs in the game.
+			//It should not be necessary for unremarkable planets such as the one in this tutorial starting from version 0.9.
+			Misc.initConditionMarket(testPlanet);
 		
-		//This should update the order of planets as they appear in the planet list display starting from version 0.9.
-		system.updateAllOrbits();
+			//This should update the order of planets as they appear in the planet list display starting from version 0.9.
+			//Normally that's a call to system.updateAllOrbits().
+			//But it goes over every orbit in the system, and we're about to add more planets.
+			//So we ask TPOrbitUpdates to do it once, when onNewGame() calls TPOrbitUpdates.end().
+			TPOrbitUpdates.update(system);
 		
-		//--------------------------------------------------
-		// Example 2
-		//--------------------------------------------------
-		//It may be helpful to compartmentalize your logic into different methods/functions.
-		//Many mods already do this to an... unnecessary degree of complexity.
-		//Moderation in all things is the key to sanity.
-		//For the next example, let's compartmentalize our second planet in a sub-routine:
-
-		createSecondTestPlanet();
+			//--------------------------------------------------
+			// Example 2
+			//--------------------------------------------------
+			//It may be helpful to compartmentalize your logic into different methods/functions.
+			//Many mods already do this to an... unnecessary degree of complexity.
+			//Moderation in all things is the key to sanity.
+			//For the next example, let's compartmentalize our second planet in a sub-routine:
+
+			TPStartupProfiler.start();
+			createSecondTestPlanet(handles, orbits);
+			TPStartupProfiler.stop("createSecondTestPlanet");
+
+			//--------------------------------------------------
+			// Example 3
+			//--------------------------------------------------
+			//Example 2 ends with Asharu still being a desert world (read on to the end of it to see why).
+			//TPPlanetReplacer finishes the job: it swaps Asharu for a brand new "terran" planet with the same id,
+			//and moves its orbit, market, station and everything else that belonged to it across.
+			//Look inside TPPlanetReplacer.java if you want to see how.
+			TPPlanetReplacer replacer = new TPPlanetReplacer(handles);
+			replacer.replace(handles.getPlanet("Corvus", "asharu"), "terran");
+			//Like TPSpecEdits, nothing happens until we commit.
+			//You could queue up every planet in the sector first, and the orbits of each system would still only be updated once.
+			List<PlanetAPI> replaced = replacer.commit();
+			((PlanetAPI) replaced.get(0)).addTag(CONTENT_TAG);
+		} finally {
+			//All done adding things, so now the orbits of Corvus are updated. Once.
+			//This is in a finally block so it happens even if something above goes wrong.
+			//Otherwise the batch would stay open, and every later update() would wait for an end() that never comes.
+			TPOrbitUpdates.end();
+		}
+
+		TPStartupProfiler.stop("onNewGame");
+		TPStartupProfiler.report("onNewGame");
 	}
 
-	private void createSecondTestPlanet() {
+	private void createSecondTestPlanet(TPEntityRegistry handles, TPOrbitAllocator orbits) {
+		//We pass the registry along, so asking it for Corvus again doesn't search for it again.
+		//We pass the orbit allocator along so it still knows about Testulon.
+		StarSystemAPI system = handles.getSystem("Corvus");
 		//Below is a slightly more succinct way to write the initial lines from example 1.
 		//This can sometimes cut down the number of import statements as well as the number of lines in your class file.
 		//It is known as method chaining and it is common in functional programming.
-		StarSystemAPI system = Global.getSector().getStarSystem("Corvus");
 		Misc.initConditionMarket(
-			system.addPlanet("testSecondPlanetId", system.getStar(), "Testia", "barren", 200, 120, 2500, 120)
+			system.addPlanet("testSecondPlanetId", system.getStar(), "Testia", "barren", 200, 120,
+				orbits.allocate(system.getStar(), 120, 2500, 100), 120)
 		);
+		//We didn't keep Testia in a variable, but the registry can find it to tag it.
+		handles.getEntity("Corvus", "testSecondPlanetId").addTag(CONTENT_TAG);
+		//Testia changes the order of the planet list too.
+		TPOrbitUpdates.update(system);
 		//What types of planets are there to choose from? That can be found in the 
 		// \starsector-core\data\config\planets.json
 
@@ -87,7 +150,8 @@ public class TPModPlugin extends BaseModPlugin {
 		//Next let's try doing something weird like changing Asharu into the terran world it always wanted to be!
 		
 		//First, we must retreive Asharu from all the entities available in this star system.
-		SectorEntityToken asharuTheEntity = system.getEntityById("asharu");
+		//The registry remembers Asharu too, in case anything else needs it later.
+		SectorEntityToken asharuTheEntity = handles.getEntity("Corvus", "asharu");
 		//Let's change the name.
 		asharuTheEntity.setName("New Asharu");
 
@@ -101,16 +165,19 @@ public class TPModPlugin extends BaseModPlugin {
 		//Further discussion would require diving into the fundamentals of object oriented programming.
 		//If the concept interests you, Google "polymorphism".
 		//If it annoys you, don't.
+		//(handles.getPlanet("Corvus", "asharu") would do this cast for us, and complain clearly if Asharu weren't a planet.)
 		PlanetAPI asharuThePlanet = (PlanetAPI) asharuTheEntity;
 
-		//Now that we have Asharu the planet, we need to get its specs.
-		PlanetSpecAPI newAsharuSpec = asharuThePlanet.getSpec();
-		//The PlanetSpecAPI let's us change the planet's texture.
-		newAsharuSpec.setTexture("graphics/planets/terran.jpg");
+		//Now that we have Asharu the planet, we can change its specs.
+		//The PlanetSpecAPI (asharuThePlanet.getSpec()) let's us change the planet's texture.
 		//There are many other attributes we can change...
 		//Experiement with the other methods available through PlanetSpecAPI.
-		//Once we're done changing the specs, we need to update Asharu with these changes.
-		asharuThePlanet.applySpecChanges();
+		//Once we're done changing the specs, we need to update Asharu with these changes using applySpecChanges().
+		//Updating a planet is a lot of work for the game, so it's best done only once per planet, however many things change.
+		//TPSpecEdits collects all our changes (for as many planets as we like) and does exactly that when we commit them.
+		TPSpecEdits specEdits = new TPSpecEdits();
+		specEdits.setTexture(asharuThePlanet, "graphics/planets/terran.jpg");
+		specEdits.commit();
 
 		//Load up the game and, wait, what's this?
 		//It says Asharu is *still* a desert planet?!
@@ -118,11 +185,10 @@ public class TPModPlugin extends BaseModPlugin {
 		//We just literally changed the texture of the planet.
 		//Unfortunately, changing the planet type is not possible using the PlanetSpecAPI...
 
-		//To truly turn Asharu into a Terran world would require that we remove it and replace it 
+		//To truly turn Asharu into a Terran world requires that we remove it and replace it 
 		//with a brand new planet initially created using the "terran" type.
 		//But since Asharu has a market and an orbital station, this is easier said than done.
-		//Once you know how to create markets, you might revisit this exercise.
-		//But more likely you'll be wanting to make your own new planets and markets instead
-		//and will leave poor Asharu behind... the forgotten desert planet.
+		//That's what Example 3 (back in onNewGame()) is for.
+		//Poor Asharu won't be the forgotten desert planet after all.
 	}
 }
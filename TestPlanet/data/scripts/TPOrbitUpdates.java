@@ -0,0 +1,51 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fs.starfarer.api.campaign.LocationAPI;
+
+/**
+ * Puts off updateAllOrbits() until a batch of changes is finished, then calls it once per changed system.
+ *
+ * updateAllOrbits() goes over every orbit in the system and re-sorts the planet list display,
+ * so calling it after each planet, station or entity we add means doing that work again and again.
+ * Wrap the changes in begin() and end(), and call update(system) wherever updateAllOrbits() would have gone.
+ * Call end() from a finally block: the batch is shared by the whole mod, so one left open by an exception
+ * would hold back every update() after it.
+ * Batches can be nested; the orbits are only updated when the outermost end() is reached.
+ * Outside of a batch, update(system) calls updateAllOrbits() right away.
+ */
+public class TPOrbitUpdates {
+	private static int depth = 0;
+	private static final Set<LocationAPI> pending = new LinkedHashSet<LocationAPI>();
+
+	public static void begin() {
+		depth++;
+	}
+
+	public static void update(LocationAPI location) {
+		if (depth == 0) {
+			location.updateAllOrbits();
+		} else {
+			pending.add(location);
+		}
+	}
+
+	public static void end() {
+		if (depth == 0) {
+			return;
+		}
+		depth--;
+		if (depth > 0) {
+			return;
+		}
+		List<LocationAPI> locations = new ArrayList<LocationAPI>(pending);
+		pending.clear();
+		for (int i = 0; i < locations.size(); i++) {
+			((LocationAPI) locations.get(i)).updateAllOrbits();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fs.starfarer.api.campaign.JumpPointAPI;
+import com.fs.starfarer.api.campaign.LocationAPI;
+import com.fs.starfarer.api.campaign.PlanetAPI;
+import com.fs.starfarer.api.campaign.SectorEntityToken;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+import com.fs.starfarer.api.campaign.rules.MemoryAPI;
+import com.fs.starfarer.api.impl.campaign.ids.Tags;
+import com.fs.starfarer.api.util.Misc;
+
+/**
+ * Turns planets into a different type of planet, by swapping each one for a brand new planet with the same id.
+ *
+ * A planet's type can't be changed once it exists, so the old planet has to go. Everything that belongs to it
+ * moves over to the new planet: its orbit, name, faction, description and tags, its memory (the $flags rules.csv
+ * and scripts keep on it) and interaction image, its market (with the market's conditions, industries and submarkets),
+ * its place in the market's connected entities, everything orbiting it (stations, moons, rings) and any jump point
+ * that was named after it. The old planet is also dropped from the TPEntityRegistry it was looked up with.
+ *
+ * Some things can't be found from the planet, so they still point at the old one and are NOT moved:
+ *  - terrain whose plugin was made for the planet, like a magnetic field or a ring band whose params name it
+ *  - fleets with an assignment that targets it, and scripts or intel that kept a reference to it
+ *  - memory "required" flags, which only the code that set them knows about
+ *  - spec edits (see TPSpecEdits): the new planet starts from its type's spec, so make them after replacing
+ *    (Asharu's new texture from Example 2 is lost this way, but as a "terran" planet it has that texture anyway)
+ * So it's best to replace planets before anything like that is set up.
+ *
+ * Like TPSpecEdits, replacements are collected first and carried out by commit(). Each system then gets a single
+ * updateAllOrbits() however many of its planets were replaced (or none, until TPOrbitUpdates.end(), inside a batch),
+ * so terraforming a whole sector stays cheap.
+ */
+public class TPPlanetReplacer {
+	private static class Replacement {
+		final PlanetAPI planet;
+		final String type;
+
+		Replacement(PlanetAPI planet, String type) {
+			this.planet = planet;
+			this.type = type;
+		}
+	}
+
+	private final List<Replacement> replacements = new ArrayList<Replacement>();
+	private final TPEntityRegistry registry;
+
+	public TPPlanetReplacer(TPEntityRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Queues this planet to be replaced by a planet of the given type (an id from planets.json, like "terran").
+	 */
+	public TPPlanetReplacer replace(PlanetAPI planet, String type) {
+		if (planet.isStar() || planet.getOrbitFocus() == null) {
+			throw new IllegalArgumentException(planet.getId() + " doesn't orbit anything, so it can't be replaced");
+		}
+		replacements.add(new Replacement(planet, type));
+		return this;
+	}
+
+	/**
+	 * Replaces every queued planet and forgets them.
+	 * @return the new planets, in the order they were queued
+	 */
+	public List<PlanetAPI> commit() {
+		List<PlanetAPI> created = new ArrayList<PlanetAPI>();
+		Set<LocationAPI> changed = new LinkedHashSet<LocationAPI>();
+		for (int i = 0; i < replacements.size(); i++) {
+			Replacement replacement = (Replacement) replacements.get(i);
+			changed.add(replacement.planet.getContainingLocation());
+			created.add(swap(replacement.planet, replacement.type));
+		}
+		replacements.clear();
+
+		//Orbits (and the planet list display) only need to be sorted out once per system, after all the swapping.
+		List<LocationAPI> locations = new ArrayList<LocationAPI>(changed);
+		for (int i = 0; i < locations.size(); i++) {
+			TPOrbitUpdates.update((LocationAPI) locations.get(i));
+		}
+		return created;
+	}
+
+	private PlanetAPI swap(PlanetAPI old, String type) {
+		LocationAPI location = old.getContainingLocation();
+		MarketAPI market = old.getMarket();
+
+		//Find everything that hangs off the old planet before it's gone. One look through the system is enough.
+		List<SectorEntityToken> orbiting = new ArrayList<SectorEntityToken>();
+		List<JumpPointAPI> jumpPoints = new ArrayList<JumpPointAPI>();
+		List<SectorEntityToken> entities = location.getAllEntities();
+		for (int i = 0; i < entities.size(); i++) {
+			SectorEntityToken entity = (SectorEntityToken) entities.get(i);
+			if (entity == old) {
+				continue;
+			}
+			if (entity.getOrbitFocus() == old) {
+				orbiting.add(entity);
+			}
+			if (entity instanceof JumpPointAPI && ((JumpPointAPI) entity).getRelatedPlanet() == old) {
+				jumpPoints.add((JumpPointAPI) entity);
+			}
+		}
+
+		//The id has to be free before the new planet can take it.
+		//Going through the registry also stops it from handing out the old planet.
+		registry.remove(old);
+		PlanetAPI planet = location.addPlanet(old.getId(), old.getOrbitFocus(), old.getName(), type,
+			old.getCircularOrbitAngle(), old.getRadius(), old.getCircularOrbitRadius(), old.getCircularOrbitPeriod());
+		planet.setFaction(old.getFactionId());
+		if (old.getCustomDescriptionId() != null) {
+			planet.setCustomDescriptionId(old.getCustomDescriptionId());
+		}
+		List<String> tags = new ArrayList<String>(old.getTags());
+		for (int i = 0; i < tags.size(); i++) {
+			planet.addTag((String) tags.get(i));
+		}
+		copyMemory(old.getMemoryWithoutUpdate(), planet.getMemoryWithoutUpdate());
+		if (old.getCustomInteractionDialogImageVisual() != null) {
+			planet.setCustomInteractionDialogImageVisual(old.getCustomInteractionDialogImageVisual());
+		}
+
+		//The market itself stays the same object, so its conditions, industries, submarkets
+		//and its place in the economy all come along without us touching them.
+		if (market != null) {
+			planet.setMarket(market);
+			market.setPrimaryEntity(planet);
+			if (market.getConnectedEntities().remove(old)) {
+				market.getConnectedEntities().add(planet);
+			}
+		} else {
+			//Every planet needs at least a condition market, or surveying it and anything else that reads its conditions breaks.
+			Misc.initConditionMarket(planet);
+		}
+
+		for (int i = 0; i < orbiting.size(); i++) {
+			SectorEntityToken entity = (SectorEntityToken) orbiting.get(i);
+			//Stations keep facing the planet, like the ones MakeAMarket adds.
+			if (entity.hasTag(Tags.STATION)) {
+				entity.setCircularOrbitPointingDown(planet, entity.getCircularOrbitAngle(), entity.getCircularOrbitRadius(), entity.getCircularOrbitPeriod());
+			} else {
+				entity.setCircularOrbit(planet, entity.getCircularOrbitAngle(), entity.getCircularOrbitRadius(), entity.getCircularOrbitPeriod());
+			}
+		}
+		for (int i = 0; i < jumpPoints.size(); i++) {
+			((JumpPointAPI) jumpPoints.get(i)).setRelatedPlanet(planet);
+		}
+		return planet;
+	}
+
+	//Flags that were set to expire keep the time they had left.
+	private static void copyMemory(MemoryAPI from, MemoryAPI to) {
+		for (Iterator<String> keys = from.getKeys().iterator(); keys.hasNext();) {
+			String key = (String) keys.next();
+			float expire = from.getExpire(key);
+			if (expire > 0) {
+				to.set(key, from.get(key), expire);
+			} else {
+				to.set(key, from.get(key));
+			}
+		}
+	}
+}
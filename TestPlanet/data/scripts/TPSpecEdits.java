@@ -0,0 +1,136 @@
+package data.scripts;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fs.starfarer.api.campaign.PlanetAPI;
+import com.fs.starfarer.api.campaign.PlanetSpecAPI;
+
+/**
+ * Collects changes to the look of any number of planets, then applies them all in one go.
+ *
+ * Every applySpecChanges() call rebuilds how the planet is drawn, so calling it after each change
+ * (or on a planet that didn't really change) is wasted work. Here every planet gets at most one
+ * applySpecChanges() when commit() is called, and none at all if every change turns out to match what it already had.
+ */
+public class TPSpecEdits {
+	private static class Edit {
+		final PlanetAPI planet;
+		String texture;
+		Color planetColor;
+		String glowTexture;
+		Color glowColor;
+		String cloudTexture;
+		Color cloudColor;
+		Color atmosphereColor;
+
+		Edit(PlanetAPI planet) {
+			this.planet = planet;
+		}
+	}
+
+	//One edit per planet, in the order the planets were first edited.
+	private final Map<String, Edit> edits = new LinkedHashMap<String, Edit>();
+
+	public TPSpecEdits setTexture(PlanetAPI planet, String texture) {
+		edit(planet).texture = texture;
+		return this;
+	}
+
+	public TPSpecEdits setPlanetColor(PlanetAPI planet, Color color) {
+		edit(planet).planetColor = color;
+		return this;
+	}
+
+	public TPSpecEdits setGlowTexture(PlanetAPI planet, String texture) {
+		edit(planet).glowTexture = texture;
+		return this;
+	}
+
+	public TPSpecEdits setGlowColor(PlanetAPI planet, Color color) {
+		edit(planet).glowColor = color;
+		return this;
+	}
+
+	public TPSpecEdits setCloudTexture(PlanetAPI planet, String texture) {
+		edit(planet).cloudTexture = texture;
+		return this;
+	}
+
+	public TPSpecEdits setCloudColor(PlanetAPI planet, Color color) {
+		edit(planet).cloudColor = color;
+		return this;
+	}
+
+	public TPSpecEdits setAtmosphereColor(PlanetAPI planet, Color color) {
+		edit(planet).atmosphereColor = color;
+		return this;
+	}
+
+	/**
+	 * Applies every collected change and forgets them.
+	 * @return the planets that actually changed
+	 */
+	public List<PlanetAPI> commit() {
+		List<PlanetAPI> changed = new ArrayList<PlanetAPI>();
+		List<Edit> pending = new ArrayList<Edit>(edits.values());
+		for (int i = 0; i < pending.size(); i++) {
+			Edit edit = (Edit) pending.get(i);
+			if (apply(edit)) {
+				changed.add(edit.planet);
+			}
+		}
+		edits.clear();
+		return changed;
+	}
+
+	private static boolean apply(Edit edit) {
+		PlanetSpecAPI spec = edit.planet.getSpec();
+		boolean changed = false;
+		if (edit.texture != null && !edit.texture.equals(spec.getTexture())) {
+			spec.setTexture(edit.texture);
+			changed = true;
+		}
+		if (edit.planetColor != null && !edit.planetColor.equals(spec.getPlanetColor())) {
+			spec.setPlanetColor(edit.planetColor);
+			changed = true;
+		}
+		if (edit.glowTexture != null && !edit.glowTexture.equals(spec.getGlowTexture())) {
+			spec.setGlowTexture(edit.glowTexture);
+			changed = true;
+		}
+		if (edit.glowColor != null && !edit.glowColor.equals(spec.getGlowColor())) {
+			spec.setGlowColor(edit.glowColor);
+			changed = true;
+		}
+		if (edit.cloudTexture != null && !edit.cloudTexture.equals(spec.getCloudTexture())) {
+			spec.setCloudTexture(edit.cloudTexture);
+			changed = true;
+		}
+		if (edit.cloudColor != null && !edit.cloudColor.equals(spec.getCloudColor())) {
+			spec.setCloudColor(edit.cloudColor);
+			changed = true;
+		}
+		if (edit.atmosphereColor != null && !edit.atmosphereColor.equals(spec.getAtmosphereColor())) {
+			spec.setAtmosphereColor(edit.atmosphereColor);
+			changed = true;
+		}
+		//Once we're done changing the specs, the planet needs to be updated with these changes. Once.
+		if (changed) {
+			edit.planet.applySpecChanges();
+		}
+		return changed;
+	}
+
+	private Edit edit(PlanetAPI planet) {
+		Edit edit = (Edit) edits.get(planet.getId());
+		if (edit == null) {
+			edit = new Edit(planet);
+			edits.put(planet.getId(), edit);
+		}
+		return edit;
+	}
+}
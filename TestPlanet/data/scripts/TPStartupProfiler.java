@@ -0,0 +1,122 @@
+package data.scripts;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.fs.starfarer.api.Global;
+
+/**
+ * Times the steps this mod takes while the game loads and while a new game starts.
+ *
+ * Wrap a step in start() and stop("step name"). For every step name it adds up the number of calls,
+ * the wall time and (where the JVM can tell us) the bytes allocated on this thread.
+ * report() writes the totals to starsector.log as CSV and as one line of JSON, then starts over.
+ *
+ * It only runs in dev mode. Otherwise start() and stop() return right away, so leaving the calls in costs nothing.
+ *
+ * MaSStartupProfiler and MaMStartupProfiler are copies of this class, on purpose: each mod has to work without the others installed.
+ * A fix to one belongs in all three.
+ */
+public class TPStartupProfiler {
+	public static final String PLUGIN = "TP";
+
+	private static final Logger log = Global.getLogger(TPStartupProfiler.class);
+
+	private static boolean enabled = false;
+	private static com.sun.management.ThreadMXBean threads;
+
+	//Steps can be nested, so started steps wait on a stack.
+	private static long[] startNanos = new long[16];
+	private static long[] startBytes = new long[16];
+	private static int depth = 0;
+
+	//Per step: calls, nanoseconds, bytes.
+	private static final Map<String, long[]> totals = new LinkedHashMap<String, long[]>();
+
+	public static void setEnabled(boolean enable) {
+		enabled = enable;
+		if (enable && threads == null) {
+			try {
+				threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			} catch (Throwable t) {
+				//Not every JVM can count allocations. We still get times and call counts.
+				threads = null;
+			}
+		}
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void start() {
+		if (!enabled) {
+			return;
+		}
+		if (depth == startNanos.length) {
+			long[] nanos = new long[depth * 2];
+			long[] bytes = new long[depth * 2];
+			System.arraycopy(startNanos, 0, nanos, 0, depth);
+			System.arraycopy(startBytes, 0, bytes, 0, depth);
+			startNanos = nanos;
+			startBytes = bytes;
+		}
+		startBytes[depth] = allocatedBytes();
+		startNanos[depth] = System.nanoTime();
+		depth++;
+	}
+
+	public static void stop(String step) {
+		if (!enabled || depth == 0) {
+			return;
+		}
+		long now = System.nanoTime();
+		depth--;
+		long[] total = (long[]) totals.get(step);
+		if (total == null) {
+			total = new long[3];
+			totals.put(step, total);
+		}
+		total[0]++;
+		total[1] += now - startNanos[depth];
+		total[2] += allocatedBytes() - startBytes[depth];
+	}
+
+	/**
+	 * Logs everything recorded since the last report, then clears it.
+	 * @param phase what was being timed, e.g. "onNewGame"
+	 */
+	public static void report(String phase) {
+		if (!enabled || totals.isEmpty()) {
+			return;
+		}
+		StringBuilder csv = new StringBuilder("plugin,phase,step,calls,millis,allocatedBytes\n");
+		StringBuilder json = new StringBuilder("{\"plugin\":\"" + PLUGIN + "\",\"phase\":\"" + phase + "\",\"steps\":[");
+		boolean first = true;
+		for (Iterator<String> steps = totals.keySet().iterator(); steps.hasNext();) {
+			String step = (String) steps.next();
+			long[] total = (long[]) totals.get(step);
+			float millis = total[1] / 1000000f;
+			csv.append(PLUGIN).append(',').append(phase).append(',').append(step).append(',')
+				.append(total[0]).append(',').append(millis).append(',').append(total[2]).append('\n');
+			json.append(first ? "" : ",").append("{\"step\":\"").append(step).append("\",\"calls\":").append(total[0])
+				.append(",\"millis\":").append(millis).append(",\"allocatedBytes\":").append(total[2]).append('}');
+			first = false;
+		}
+		json.append("]}");
+		log.info("Startup profile\n" + csv + json);
+		totals.clear();
+		depth = 0;
+	}
+
+	private static long allocatedBytes() {
+		if (threads == null) {
+			return 0;
+		}
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
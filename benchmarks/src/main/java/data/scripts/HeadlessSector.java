@@ -0,0 +1,661 @@
+package data.scripts;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.lwjgl.util.vector.Vector2f;
+
+import com.fs.starfarer.api.FactoryAPI;
+import com.fs.starfarer.api.Global;
+import com.fs.starfarer.api.SettingsAPI;
+import com.fs.starfarer.api.campaign.CustomCampaignEntityAPI;
+import com.fs.starfarer.api.campaign.JumpPointAPI;
+import com.fs.starfarer.api.campaign.LocationAPI;
+import com.fs.starfarer.api.campaign.PlanetAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.SectorEntityToken;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+import com.fs.starfarer.api.campaign.econ.EconomyAPI;
+import com.fs.starfarer.api.campaign.econ.Industry;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+import com.fs.starfarer.api.campaign.econ.MarketConditionAPI;
+import com.fs.starfarer.api.campaign.econ.SubmarketAPI;
+import com.fs.starfarer.api.campaign.rules.MemoryAPI;
+import com.fs.starfarer.api.combat.MutableStat;
+
+/**
+ * A sector that runs without the game, so benchmarks can run the mods' set-up code on their own.
+ *
+ * Sectors, systems, planets, markets, the economy, the factory and settings are java.lang.reflect.Proxy objects
+ * over the real API interfaces, with their state in plain lists and maps, so this works with whatever
+ * starfarer.api.jar the benchmarks are built against. install() puts them into Global.
+ * The methods the mods call behave like the game's. Any other setFoo() is remembered and handed back by getFoo()
+ * or isFoo(); anything else returns null, 0 or false.
+ *
+ * The costs are a model of the game's, not the game's: getStarSystem() and getEntityById() search a list, and
+ * updateAllOrbits() sorts the location's planets by orbit radius (the planet list display order).
+ * Code that goes into the game's own implementation classes, like Misc.initConditionMarket(),
+ * Misc.generatePlanetConditions() or StarSystemGenerator.addOrbitingEntities(), can't run here.
+ */
+public class HeadlessSector {
+	private static final Object UNHANDLED = new Object();
+	private static final Object[] NO_ARGS = new Object[0];
+
+	private HeadlessSector() {
+	}
+
+	/**
+	 * Makes an empty sector and puts it, a factory and (non dev mode) settings into Global.
+	 */
+	public static SectorAPI install(String seed) {
+		SectorAPI sector = (SectorAPI) proxy(SectorAPI.class, new SectorHandler(seed));
+		setGlobal(SectorAPI.class, sector);
+		setGlobal(FactoryAPI.class, proxy(FactoryAPI.class, new FactoryHandler()));
+		setGlobal(SettingsAPI.class, proxy(SettingsAPI.class, new Handler()));
+		return sector;
+	}
+
+	/**
+	 * Adds a system with a star and the given number of planets around it, like a vanilla system.
+	 */
+	public static StarSystemAPI addSystem(SectorAPI sector, String name, float x, float y, int planets) {
+		StarSystemAPI system = sector.createStarSystem(name);
+		PlanetAPI star = system.initStar(name.toLowerCase() + "_star", "star_yellow", 500, x, y, 300);
+		for (int i = 0; i < planets; i++) {
+			system.addPlanet(name.toLowerCase() + "_" + i, star, name + " " + (i + 1), "barren", i * 37, 100, 2000 + i * 1000, 100 + i * 20);
+		}
+		system.updateAllOrbits();
+		return system;
+	}
+
+	//Global has no setters we can count on, so its static fields are filled in by type.
+	private static void setGlobal(Class<?> type, Object value) {
+		Field[] fields = Global.class.getDeclaredFields();
+		for (int i = 0; i < fields.length; i++) {
+			if (Modifier.isStatic(fields[i].getModifiers()) && fields[i].getType() == type) {
+				fields[i].setAccessible(true);
+				try {
+					fields[i].set(null, value);
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException("Can't set Global's " + type.getSimpleName(), e);
+				}
+				return;
+			}
+		}
+		throw new IllegalStateException("Global has no " + type.getSimpleName() + " field to set");
+	}
+
+	private static Object proxy(Class<?> type, Handler handler) {
+		handler.self = Proxy.newProxyInstance(HeadlessSector.class.getClassLoader(), new Class<?>[] {type}, handler);
+		return handler.self;
+	}
+
+	/**
+	 * Setters and getters by name for everything that isn't handled on purpose.
+	 */
+	private static class Handler implements InvocationHandler {
+		Object self;
+		final Map<String, Object> properties = new HashMap<String, Object>();
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			String name = method.getName();
+			Object[] arguments = args == null ? NO_ARGS : args;
+			Object result = handle(name, arguments);
+			if (result != UNHANDLED) {
+				return result;
+			}
+			if (name.equals("equals") && arguments.length == 1) {
+				return Boolean.valueOf(proxy == arguments[0]);
+			}
+			if (name.equals("hashCode") && arguments.length == 0) {
+				return Integer.valueOf(System.identityHashCode(proxy));
+			}
+			if (name.equals("toString") && arguments.length == 0) {
+				return getClass().getSimpleName() + properties;
+			}
+			if (name.startsWith("set") && arguments.length == 1) {
+				properties.put(name.substring(3), arguments[0]);
+				return null;
+			}
+			if (arguments.length == 0) {
+				Object value = null;
+				if (name.startsWith("get")) {
+					value = properties.get(name.substring(3));
+				} else if (name.startsWith("is")) {
+					value = properties.get(name.substring(2));
+				}
+				if (value != null) {
+					return value;
+				}
+			}
+			return defaultValue(method.getReturnType());
+		}
+
+		Object handle(String name, Object[] args) {
+			return UNHANDLED;
+		}
+
+		private static Object defaultValue(Class<?> type) {
+			if (!type.isPrimitive() || type == void.class) {
+				return null;
+			}
+			if (type == boolean.class) {
+				return Boolean.FALSE;
+			}
+			if (type == char.class) {
+				return Character.valueOf((char) 0);
+			}
+			if (type == float.class) {
+				return Float.valueOf(0);
+			}
+			if (type == double.class) {
+				return Double.valueOf(0);
+			}
+			if (type == long.class) {
+				return Long.valueOf(0);
+			}
+			if (type == byte.class) {
+				return Byte.valueOf((byte) 0);
+			}
+			if (type == short.class) {
+				return Short.valueOf((short) 0);
+			}
+			return Integer.valueOf(0);
+		}
+	}
+
+	private static class SectorHandler extends Handler {
+		final String seed;
+		final List<StarSystemAPI> systems = new ArrayList<StarSystemAPI>();
+		final EconomyAPI economy = (EconomyAPI) proxy(EconomyAPI.class, new EconomyHandler());
+		final LocationAPI hyperspace = (LocationAPI) proxy(LocationAPI.class, new LocationHandler("Hyperspace", true));
+		final Map<String, Object> persistentData = new HashMap<String, Object>();
+		final List<Object> scripts = new ArrayList<Object>();
+
+		SectorHandler(String seed) {
+			this.seed = seed;
+		}
+
+		@Override
+		Object handle(String name, Object[] args) {
+			if (name.equals("createStarSystem")) {
+				StarSystemAPI system = (StarSystemAPI) proxy(StarSystemAPI.class, new LocationHandler((String) args[0], false));
+				systems.add(system);
+				return system;
+			}
+			if (name.equals("getStarSystem")) {
+				//Searched every time, like the game does.
+				for (int i = 0; i < systems.size(); i++) {
+					StarSystemAPI system = systems.get(i);
+					if (system.getBaseName().equalsIgnoreCase((String) args[0]) || system.getName().equalsIgnoreCase((String) args[0])) {
+						return system;
+					}
+				}
+				return null;
+			}
+			if (name.equals("getStarSystems")) {
+				return Collections.unmodifiableList(systems);
+			}
+			if (name.equals("getEconomy")) {
+				return economy;
+			}
+			if (name.equals("getHyperspace")) {
+				return hyperspace;
+			}
+			if (name.equals("getSeedString")) {
+				return seed;
+			}
+			if (name.equals("getPersistentData")) {
+				return persistentData;
+			}
+			if (name.equals("addScript") || name.equals("addTransientScript")) {
+				scripts.add(args[0]);
+				return null;
+			}
+			return UNHANDLED;
+		}
+	}
+
+	private static class LocationHandler extends Handler {
+		final String baseName;
+		final boolean hyperspace;
+		final Vector2f location = new Vector2f();
+		final List<SectorEntityToken> entities = new ArrayList<SectorEntityToken>();
+		final List<PlanetAPI> planets = new ArrayList<PlanetAPI>();
+		PlanetAPI star;
+
+		LocationHandler(String baseName, boolean hyperspace) {
+			this.baseName = baseName;
+			this.hyperspace = hyperspace;
+		}
+
+		@Override
+		Object handle(String name, Object[] args) {
+			if (name.equals("getId")) {
+				return baseName.toLowerCase();
+			}
+			if (name.equals("getBaseName")) {
+				return baseName;
+			}
+			if (name.equals("getName")) {
+				return hyperspace ? baseName : baseName + " Star System";
+			}
+			if (name.equals("isHyperspace")) {
+				return Boolean.valueOf(hyperspace);
+			}
+			if (name.equals("getLocation")) {
+				return location;
+			}
+			if (name.equals("initStar")) {
+				//initStar(id, type, radius, x, y, corona)
+				location.x = ((Float) args[3]).floatValue();
+				location.y = ((Float) args[4]).floatValue();
+				star = (PlanetAPI) add(PlanetAPI.class, new EntityHandler((String) args[0], baseName, (String) args[1], ((Float) args[2]).floatValue(), true));
+				planets.add(star);
+				return star;
+			}
+			if (name.equals("getStar")) {
+				return star;
+			}
+			if (name.equals("addPlanet")) {
+				//addPlanet(id, focus, name, type, angle, radius, orbitRadius, orbitDays)
+				PlanetAPI planet = (PlanetAPI) add(PlanetAPI.class, new EntityHandler((String) args[0], (String) args[2], (String) args[3], ((Float) args[5]).floatValue(), false));
+				planet.setCircularOrbit((SectorEntityToken) args[1], ((Float) args[4]).floatValue(), ((Float) args[6]).floatValue(), ((Float) args[7]).floatValue());
+				planets.add(planet);
+				return planet;
+			}
+			if (name.equals("addCustomEntity")) {
+				//addCustomEntity(id, name, type, factionId)
+				EntityHandler handler = new EntityHandler((String) args[0], (String) args[1], (String) args[2], 0, false);
+				handler.factionId = (String) args[3];
+				return add(CustomCampaignEntityAPI.class, handler);
+			}
+			if (name.equals("autogenerateHyperspaceJumpPoints")) {
+				//One at each gas giant if asked, and one at the fringe.
+				if (((Boolean) args[0]).booleanValue()) {
+					for (int i = 0; i < planets.size(); i++) {
+						PlanetAPI planet = planets.get(i);
+						if (planet.isGasGiant()) {
+							JumpPointAPI point = (JumpPointAPI) add(JumpPointAPI.class, new EntityHandler(planet.getId() + "_jump", planet.getName() + " Gravity Well", "jump_point", 0, false));
+							point.setRelatedPlanet(planet);
+						}
+					}
+				}
+				if (((Boolean) args[1]).booleanValue()) {
+					add(JumpPointAPI.class, new EntityHandler(baseName.toLowerCase() + "_fringe_jump", "Fringe Jump-point", "jump_point", 0, false));
+				}
+				return null;
+			}
+			if (name.equals("getPlanets")) {
+				return new ArrayList<PlanetAPI>(planets);
+			}
+			if (name.equals("getAllEntities")) {
+				return new ArrayList<SectorEntityToken>(entities);
+			}
+			if (name.equals("getCustomEntities")) {
+				return ofType(CustomCampaignEntityAPI.class);
+			}
+			if (name.equals("getJumpPoints")) {
+				return ofType(JumpPointAPI.class);
+			}
+			if (name.equals("getEntityById")) {
+				//Searched every time, like the game does.
+				for (int i = 0; i < entities.size(); i++) {
+					if (entities.get(i).getId().equals(args[0])) {
+						return entities.get(i);
+					}
+				}
+				return null;
+			}
+			if (name.equals("removeEntity")) {
+				entities.remove(args[0]);
+				planets.remove(args[0]);
+				return null;
+			}
+			if (name.equals("updateAllOrbits")) {
+				//Stands in for the game's pass over every orbit: put the planet list in orbit order again.
+				Collections.sort(planets, BY_ORBIT);
+				return null;
+			}
+			return UNHANDLED;
+		}
+
+		private Object add(Class<?> type, EntityHandler handler) {
+			handler.location = (LocationAPI) self;
+			SectorEntityToken entity = (SectorEntityToken) proxy(type, handler);
+			entities.add(entity);
+			return entity;
+		}
+
+		private <T> List<T> ofType(Class<T> type) {
+			List<T> found = new ArrayList<T>();
+			for (int i = 0; i < entities.size(); i++) {
+				if (type.isInstance(entities.get(i))) {
+					found.add(type.cast(entities.get(i)));
+				}
+			}
+			return found;
+		}
+	}
+
+	private static final Comparator<PlanetAPI> BY_ORBIT = new Comparator<PlanetAPI>() {
+		@Override
+		public int compare(PlanetAPI a, PlanetAPI b) {
+			return Float.compare(a.getCircularOrbitRadius(), b.getCircularOrbitRadius());
+		}
+	};
+
+	private static class EntityHandler extends Handler {
+		final String id;
+		String name;
+		final String type;
+		final float radius;
+		final boolean isStar;
+		LocationAPI location;
+		String factionId;
+		MarketAPI market;
+		final Set<String> tags = new LinkedHashSet<String>();
+		SectorEntityToken orbitFocus;
+		float orbitAngle;
+		float orbitRadius;
+		float orbitPeriod;
+		MemoryAPI memory;
+
+		EntityHandler(String id, String name, String type, float radius, boolean isStar) {
+			this.id = id;
+			this.name = name;
+			this.type = type;
+			this.radius = radius;
+			this.isStar = isStar;
+		}
+
+		@Override
+		Object handle(String method, Object[] args) {
+			if (method.equals("getId")) {
+				return id;
+			}
+			if (method.equals("getName")) {
+				return name;
+			}
+			if (method.equals("setName")) {
+				name = (String) args[0];
+				return null;
+			}
+			if (method.equals("getTypeId") || method.equals("getCustomEntityType")) {
+				return type;
+			}
+			if (method.equals("isStar")) {
+				return Boolean.valueOf(isStar);
+			}
+			if (method.equals("isGasGiant")) {
+				return Boolean.valueOf(type.contains("giant"));
+			}
+			if (method.equals("getRadius")) {
+				return Float.valueOf(radius);
+			}
+			if (method.equals("getContainingLocation")) {
+				return location;
+			}
+			if (method.equals("getStarSystem")) {
+				return location instanceof StarSystemAPI ? location : null;
+			}
+			if (method.equals("setFaction")) {
+				factionId = (String) args[0];
+				return null;
+			}
+			if (method.equals("getFactionId")) {
+				return factionId;
+			}
+			if (method.equals("getMarket")) {
+				return market;
+			}
+			if (method.equals("setMarket")) {
+				market = (MarketAPI) args[0];
+				return null;
+			}
+			if (method.equals("addTag")) {
+				tags.add((String) args[0]);
+				return null;
+			}
+			if (method.equals("removeTag")) {
+				tags.remove(args[0]);
+				return null;
+			}
+			if (method.equals("hasTag")) {
+				return Boolean.valueOf(tags.contains(args[0]));
+			}
+			if (method.equals("getTags")) {
+				return new ArrayList<String>(tags);
+			}
+			if (method.equals("setCircularOrbit") || method.equals("setCircularOrbitPointingDown")) {
+				orbitFocus = (SectorEntityToken) args[0];
+				orbitAngle = ((Float) args[1]).floatValue();
+				orbitRadius = ((Float) args[2]).floatValue();
+				orbitPeriod = ((Float) args[3]).floatValue();
+				return null;
+			}
+			if (method.equals("getOrbitFocus")) {
+				return orbitFocus;
+			}
+			if (method.equals("getCircularOrbitAngle")) {
+				return Float.valueOf(orbitAngle);
+			}
+			if (method.equals("getCircularOrbitRadius")) {
+				return Float.valueOf(orbitRadius);
+			}
+			if (method.equals("getCircularOrbitPeriod")) {
+				return Float.valueOf(orbitPeriod);
+			}
+			if (method.equals("getLocation")) {
+				//A system's star sits at its center.
+				if (orbitFocus == null) {
+					return new Vector2f();
+				}
+				double angle = Math.toRadians(orbitAngle);
+				Vector2f focus = orbitFocus.getLocation();
+				return new Vector2f(focus.x + (float) Math.cos(angle) * orbitRadius, focus.y + (float) Math.sin(angle) * orbitRadius);
+			}
+			if (method.equals("getLocationInHyperspace")) {
+				return location instanceof StarSystemAPI ? ((StarSystemAPI) location).getLocation() : handle("getLocation", NO_ARGS);
+			}
+			if (method.equals("getMemoryWithoutUpdate") || method.equals("getMemory")) {
+				if (memory == null) {
+					memory = (MemoryAPI) proxy(MemoryAPI.class, new MemoryHandler());
+				}
+				return memory;
+			}
+			return UNHANDLED;
+		}
+	}
+
+	private static class MarketHandler extends Handler {
+		final String id;
+		final String name;
+		final List<MarketConditionAPI> conditions = new ArrayList<MarketConditionAPI>();
+		final List<Industry> industries = new ArrayList<Industry>();
+		final List<SubmarketAPI> submarkets = new ArrayList<SubmarketAPI>();
+		final Set<SectorEntityToken> connectedEntities = new LinkedHashSet<SectorEntityToken>();
+		final MutableStat tariff = new MutableStat(0);
+
+		MarketHandler(String id, String name, int size) {
+			this.id = id;
+			this.name = name;
+			properties.put("Size", Integer.valueOf(size));
+		}
+
+		@Override
+		Object handle(String method, Object[] args) {
+			if (method.equals("getId")) {
+				return id;
+			}
+			if (method.equals("getName")) {
+				return name;
+			}
+			if (method.equals("addCondition")) {
+				if (find(conditions, (String) args[0]) == null) {
+					conditions.add((MarketConditionAPI) named(MarketConditionAPI.class, (String) args[0]));
+				}
+				return args[0];
+			}
+			if (method.equals("removeCondition")) {
+				conditions.remove(find(conditions, (String) args[0]));
+				return null;
+			}
+			if (method.equals("hasCondition")) {
+				return Boolean.valueOf(find(conditions, (String) args[0]) != null);
+			}
+			if (method.equals("getConditions")) {
+				return new ArrayList<MarketConditionAPI>(conditions);
+			}
+			if (method.equals("addIndustry")) {
+				if (find(industries, (String) args[0]) == null) {
+					industries.add((Industry) named(Industry.class, (String) args[0]));
+				}
+				return null;
+			}
+			if (method.equals("removeIndustry")) {
+				industries.remove(find(industries, (String) args[0]));
+				return null;
+			}
+			if (method.equals("getIndustry")) {
+				return find(industries, (String) args[0]);
+			}
+			if (method.equals("hasIndustry")) {
+				return Boolean.valueOf(find(industries, (String) args[0]) != null);
+			}
+			if (method.equals("getIndustries")) {
+				return new ArrayList<Industry>(industries);
+			}
+			if (method.equals("addSubmarket")) {
+				if (find(submarkets, (String) args[0]) == null) {
+					submarkets.add((SubmarketAPI) named(SubmarketAPI.class, (String) args[0]));
+				}
+				return null;
+			}
+			if (method.equals("getSubmarketsCopy")) {
+				return new ArrayList<SubmarketAPI>(submarkets);
+			}
+			if (method.equals("getConnectedEntities")) {
+				return connectedEntities;
+			}
+			if (method.equals("getTariff")) {
+				return tariff;
+			}
+			if (method.equals("getContainingLocation")) {
+				SectorEntityToken primary = (SectorEntityToken) properties.get("PrimaryEntity");
+				return primary == null ? null : primary.getContainingLocation();
+			}
+			return UNHANDLED;
+		}
+
+		//Conditions, industries and submarkets are only their id here; an industry's upkeep is always 0.
+		private static Object named(Class<?> type, final String id) {
+			Handler handler = new Handler() {
+				@Override
+				Object handle(String method, Object[] args) {
+					if (method.equals("getId") || method.equals("getSpecId") || method.equals("toString")) {
+						return id;
+					}
+					if (method.equals("getUpkeep")) {
+						return new MutableStat(0);
+					}
+					return UNHANDLED;
+				}
+			};
+			return proxy(type, handler);
+		}
+
+		private static <T> T find(List<T> parts, String id) {
+			for (int i = 0; i < parts.size(); i++) {
+				if (parts.get(i).toString().equals(id)) {
+					return parts.get(i);
+				}
+			}
+			return null;
+		}
+	}
+
+	private static class EconomyHandler extends Handler {
+		final Map<String, MarketAPI> markets = new LinkedHashMap<String, MarketAPI>();
+
+		@Override
+		Object handle(String name, Object[] args) {
+			if (name.equals("addMarket")) {
+				MarketAPI market = (MarketAPI) args[0];
+				markets.put(market.getId(), market);
+				return null;
+			}
+			if (name.equals("removeMarket")) {
+				markets.remove(((MarketAPI) args[0]).getId());
+				return null;
+			}
+			if (name.equals("getMarket")) {
+				return markets.get(args[0]);
+			}
+			if (name.equals("getMarketsCopy")) {
+				return new ArrayList<MarketAPI>(markets.values());
+			}
+			return UNHANDLED;
+		}
+	}
+
+	private static class FactoryHandler extends Handler {
+		@Override
+		Object handle(String name, Object[] args) {
+			if (name.equals("createMarket")) {
+				return proxy(MarketAPI.class, new MarketHandler((String) args[0], (String) args[1], ((Integer) args[2]).intValue()));
+			}
+			return UNHANDLED;
+		}
+	}
+
+	private static class MemoryHandler extends Handler {
+		final Map<String, Object> values = new LinkedHashMap<String, Object>();
+		final Map<String, Float> expires = new HashMap<String, Float>();
+
+		@Override
+		Object handle(String name, Object[] args) {
+			if (name.equals("set")) {
+				values.put((String) args[0], args[1]);
+				if (args.length > 2) {
+					expires.put((String) args[0], (Float) args[2]);
+				} else {
+					expires.remove(args[0]);
+				}
+				return null;
+			}
+			if (name.equals("get")) {
+				return values.get(args[0]);
+			}
+			if (name.equals("contains")) {
+				return Boolean.valueOf(values.containsKey(args[0]));
+			}
+			if (name.equals("unset")) {
+				values.remove(args[0]);
+				expires.remove(args[0]);
+				return null;
+			}
+			if (name.equals("getKeys")) {
+				return new ArrayList<String>(values.keySet());
+			}
+			if (name.equals("getExpire")) {
+				Float expire = expires.get(args[0]);
+				return expire == null ? Float.valueOf(-1) : expire;
+			}
+			return UNHANDLED;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fs.starfarer.api.campaign.PlanetAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+
+/**
+ * Scoring 10000 planets and picking the best ten, from MaMColonyRanking's condition bits
+ * against looking up each planet's condition ids in maps, the way it would be done without the bit tables.
+ * Both get the same random conditions (3 to 8 of 96 per planet), so neither reads a market.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaMColonyRankingBenchmark {
+	private static final int CONDITIONS = 96;
+	private static final int BEST = 10;
+
+	@Param({"10000"})
+	public int planets;
+
+	private List<PlanetAPI> planetList;
+	private long[] conditionBits;
+	private List<List<String>> conditionIds;
+	private Map<String, Float> hazardById;
+	private Map<String, Float> resourcesById;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(1);
+		Map<String, Integer> bits = new HashMap<String, Integer>();
+		float[] hazard = new float[CONDITIONS];
+		float[] resources = new float[CONDITIONS];
+		hazardById = new HashMap<String, Float>();
+		resourcesById = new HashMap<String, Float>();
+		for (int i = 0; i < CONDITIONS; i++) {
+			String id = "condition_" + i;
+			bits.put(id, i);
+			hazard[i] = (random.nextInt(9) - 2) * 25;
+			resources[i] = random.nextInt(4);
+			hazardById.put(id, hazard[i]);
+			resourcesById.put(id, resources[i]);
+		}
+		MaMColonyRanking.setTables(bits, hazard, resources);
+
+		SectorAPI sector = HeadlessSector.install("benchmark");
+		StarSystemAPI system = HeadlessSector.addSystem(sector, "Ranking Test", 0, 0, planets);
+		planetList = new ArrayList<PlanetAPI>(system.getPlanets());
+		planetList.remove(system.getStar());
+
+		int words = (CONDITIONS + 63) / 64;
+		conditionBits = new long[planets * words];
+		conditionIds = new ArrayList<List<String>>(planets);
+		for (int p = 0; p < planets; p++) {
+			List<String> ids = new ArrayList<String>();
+			for (int c = 3 + random.nextInt(6); c > 0; c--) {
+				int bit = random.nextInt(CONDITIONS);
+				if (!ids.contains("condition_" + bit)) {
+					ids.add("condition_" + bit);
+					conditionBits[p * words + (bit >>> 6)] |= 1L << bit;
+				}
+			}
+			conditionIds.add(ids);
+		}
+	}
+
+	@Benchmark
+	public List<PlanetAPI> bits() {
+		return new MaMColonyRanking(planetList, conditionBits).best(BEST);
+	}
+
+	@Benchmark
+	public List<PlanetAPI> conditionIds() {
+		float[] scores = new float[planets];
+		for (int p = 0; p < planets; p++) {
+			List<String> ids = conditionIds.get(p);
+			float totalHazard = 0;
+			float totalResources = 0;
+			for (int c = 0; c < ids.size(); c++) {
+				totalHazard += hazardById.get(ids.get(c));
+				totalResources += resourcesById.get(ids.get(c));
+			}
+			scores[p] = totalResources - totalHazard / MaMColonyRanking.HAZARD_PER_POINT;
+		}
+		//The same best-few pass as MaMColonyRanking.best(), so only the scoring differs.
+		int[] top = new int[BEST];
+		int found = 0;
+		for (int i = 0; i < planets; i++) {
+			if (found == BEST && scores[i] <= scores[top[BEST - 1]]) {
+				continue;
+			}
+			int at = found < BEST ? found++ : BEST - 1;
+			while (at > 0 && scores[top[at - 1]] < scores[i]) {
+				top[at] = top[at - 1];
+				at--;
+			}
+			top[at] = i;
+		}
+		List<PlanetAPI> result = new ArrayList<PlanetAPI>(found);
+		for (int i = 0; i < found; i++) {
+			result.add(planetList.get(top[i]));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,86 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fs.starfarer.api.campaign.PlanetAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+import com.fs.starfarer.api.impl.campaign.ids.Conditions;
+import com.fs.starfarer.api.impl.campaign.ids.Factions;
+import com.fs.starfarer.api.impl.campaign.ids.Industries;
+import com.fs.starfarer.api.impl.campaign.ids.Submarkets;
+
+/**
+ * MaMMarketBlueprint.commitAll() for 1 and for 500 markets like Yoo-Toob's, in a HeadlessSector,
+ * against committing the same markets one call at a time.
+ * Add -prof gc for allocations (which also count building the sector and blueprints before every call).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaMMarketBlueprintBenchmark {
+	@Param({"1", "500"})
+	public int markets;
+
+	private List<MaMMarketBlueprint> blueprints;
+
+	//Committing gives every planet a market, so each call gets new planets.
+	@Setup(Level.Invocation)
+	public void setUp() {
+		SectorAPI sector = HeadlessSector.install("benchmark");
+		StarSystemAPI system = HeadlessSector.addSystem(sector, "Market Test", 0, 0, markets);
+		List<PlanetAPI> planets = system.getPlanets();
+		blueprints = new ArrayList<MaMMarketBlueprint>(markets);
+		for (int i = 0; i < planets.size(); i++) {
+			PlanetAPI planet = (PlanetAPI) planets.get(i);
+			if (planet.isStar()) {
+				continue;
+			}
+			blueprints.add(new MaMMarketBlueprint.Builder(planet)
+				.size(3)
+				.faction(Factions.INDEPENDENT)
+				.tariff(0.3f)
+				.condition(Conditions.THIN_ATMOSPHERE)
+				.condition(Conditions.POPULATION_3)
+				.industry(Industries.POPULATION)
+				.industry(Industries.SPACEPORT)
+				.submarket(Submarkets.SUBMARKET_OPEN)
+				.submarket(Submarkets.SUBMARKET_STORAGE)
+				.build());
+		}
+	}
+
+	@Benchmark
+	public List<MarketAPI> commitAll() {
+		return MaMMarketBlueprint.commitAll(blueprints);
+	}
+
+	@Benchmark
+	public List<MarketAPI> commitOneAtATime() {
+		List<MarketAPI> committed = new ArrayList<MarketAPI>(blueprints.size());
+		for (int i = 0; i < blueprints.size(); i++) {
+			committed.addAll(MaMMarketBlueprint.commitAll(Collections.singletonList(blueprints.get(i))));
+		}
+		return committed;
+	}
+}
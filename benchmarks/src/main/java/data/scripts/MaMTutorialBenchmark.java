@@ -0,0 +1,57 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.econ.MarketAPI;
+
+/**
+ * MakeAMarket's tutorialPart1(), from creating Toob's Star to adding its market to the economy, in a HeadlessSector
+ * about as full as vanilla's. Throughput, and sampled times for the p99; add -prof gc for what it allocates.
+ * (JMH's gc figures also count building that sector, which happens before every call and isn't timed.)
+ *
+ * This is the only onNewGame() path that runs headless. tutorialPart2() calls Misc.generatePlanetConditions(),
+ * TestPlanet's examples call Misc.initConditionMarket() and MakeAStar's systems go through the StarSystemGenerator,
+ * and all of those need the game's campaign engine. Time those in the game with each mod's StartupProfiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaMTutorialBenchmark {
+	private static final int VANILLA_SYSTEMS = 60;
+
+	private final MaMModPlugin plugin = new MaMModPlugin();
+
+	//A fresh sector every time, since the tutorial adds the same system and market to it.
+	@Setup(Level.Invocation)
+	public void setUp() {
+		SectorAPI sector = HeadlessSector.install("benchmark");
+		for (int i = 0; i < VANILLA_SYSTEMS; i++) {
+			HeadlessSector.addSystem(sector, "System " + i, (i % 10) * 6000 - 30000, (i / 10) * 6000 - 18000, 4);
+		}
+	}
+
+	@Benchmark
+	public List<MarketAPI> tutorialPart1() {
+		List<MaMMarketBlueprint> markets = new ArrayList<MaMMarketBlueprint>();
+		markets.add(plugin.tutorialPart1());
+		return MaMMarketBlueprint.commitAll(markets);
+	}
+}
@@ -0,0 +1,69 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What MaSConditionSets.intern() costs per planet, from one thread and from several at once
+ * (the planner's worker threads all intern into the same map).
+ *
+ * The condition lists are made up from the same kinds of conditions the planner hands out,
+ * so most of them repeat, like they do in a generated sector.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaSConditionSetsBenchmark {
+	private static final String[] CONDITIONS = {
+		"very_hot", "hot", "cold", "very_cold", "no_atmosphere", "thin_atmosphere", "toxic_atmosphere",
+		"tectonic_activity", "ore_sparse", "ore_moderate", "rare_ore_sparse", "volatiles_trace", "organics_trace"
+	};
+	private static final int LISTS = 1024;
+
+	private final List<List<String>> lists = new ArrayList<List<String>>();
+	private int next = 0;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(12345L);
+		for (int i = 0; i < LISTS; i++) {
+			List<String> conditions = new ArrayList<String>();
+			int size = 1 + random.nextInt(4);
+			for (int c = 0; c < size; c++) {
+				String condition = CONDITIONS[random.nextInt(CONDITIONS.length)];
+				if (!conditions.contains(condition)) {
+					conditions.add(condition);
+				}
+			}
+			lists.add(conditions);
+		}
+	}
+
+	@Benchmark
+	public List<String> intern() {
+		return MaSConditionSets.intern(lists.get(next++ & (LISTS - 1)));
+	}
+
+	@Benchmark
+	@Threads(4)
+	public List<String> internFromFourThreads() {
+		return MaSConditionSets.intern(lists.get(next++ & (LISTS - 1)));
+	}
+}
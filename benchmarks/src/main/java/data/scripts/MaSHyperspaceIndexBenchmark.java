@@ -0,0 +1,99 @@
+package data.scripts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.lwjgl.util.vector.Vector2f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How MaSHyperspaceIndex holds up as the sector fills: filling it, checking a spot and finding the nearest free one.
+ *
+ * Systems get the default radius from mas_systems.json and are scattered over a square about as wide as
+ * the vanilla sector, so larger counts mean a more crowded sector, like "count" in the "generated" settings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaSHyperspaceIndexBenchmark {
+	private static final float SYSTEM_RADIUS = 1000;
+	private static final float SECTOR_SIZE = 160000;
+	private static final int PROBES = 1024;
+
+	@Param({"100", "1000"})
+	public int systems;
+
+	private float[] xs;
+	private float[] ys;
+	private MaSHyperspaceIndex index;
+	private float[] probeXs = new float[PROBES];
+	private float[] probeYs = new float[PROBES];
+	private int nextProbe = 0;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(12345L);
+		List<Float> spots = new ArrayList<Float>();
+		index = new MaSHyperspaceIndex(SYSTEM_RADIUS * 2);
+		//Only keep spots that fit, so fill() never hits a clash.
+		while (spots.size() < systems * 2) {
+			float x = (random.nextFloat() - 0.5f) * SECTOR_SIZE;
+			float y = (random.nextFloat() - 0.5f) * SECTOR_SIZE;
+			if (!index.overlaps(x, y, SYSTEM_RADIUS)) {
+				index.register("system " + spots.size(), x, y, SYSTEM_RADIUS, Collections.<String>emptyList());
+				spots.add(Float.valueOf(x));
+				spots.add(Float.valueOf(y));
+			}
+		}
+		xs = new float[systems];
+		ys = new float[systems];
+		for (int i = 0; i < systems; i++) {
+			xs[i] = spots.get(i * 2).floatValue();
+			ys[i] = spots.get(i * 2 + 1).floatValue();
+		}
+		for (int i = 0; i < PROBES; i++) {
+			probeXs[i] = (random.nextFloat() - 0.5f) * SECTOR_SIZE;
+			probeYs[i] = (random.nextFloat() - 0.5f) * SECTOR_SIZE;
+		}
+	}
+
+	@Benchmark
+	public MaSHyperspaceIndex fill() {
+		MaSHyperspaceIndex filled = new MaSHyperspaceIndex(SYSTEM_RADIUS * 2);
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < systems; i++) {
+			ids.clear();
+			ids.add("system_" + i + "_star");
+			filled.register("system " + i, xs[i], ys[i], SYSTEM_RADIUS, ids);
+		}
+		return filled;
+	}
+
+	@Benchmark
+	public boolean overlaps() {
+		int probe = nextProbe++ & (PROBES - 1);
+		return index.overlaps(probeXs[probe], probeYs[probe], SYSTEM_RADIUS);
+	}
+
+	@Benchmark
+	public Vector2f nearestFree() {
+		int probe = nextProbe++ & (PROBES - 1);
+		return index.nearestFree(probeXs[probe], probeYs[probe], SYSTEM_RADIUS);
+	}
+}
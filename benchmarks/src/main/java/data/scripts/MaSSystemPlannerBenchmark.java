@@ -0,0 +1,49 @@
+package data.scripts;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How long MaSSystemPlanner takes to plan the "generated" systems, on one thread and on several.
+ *
+ * threads works like in mas_systems.json: 0 means one per core. Compare 1 with the rest to see
+ * what planning in parallel gains (the plans come out the same either way).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaSSystemPlannerBenchmark {
+	@Param({"1", "2", "4", "0"})
+	public int threads;
+
+	@Param({"200", "2000"})
+	public int count;
+
+	private MaSSystemPlanner.Settings settings;
+
+	@Setup
+	public void setUp() throws Exception {
+		settings = new MaSSystemPlanner.Settings(new JSONObject("{\"count\":" + count + ",\"threads\":" + threads + "}"));
+	}
+
+	@Benchmark
+	public List<MaSSystemBlueprint> plan() {
+		return MaSSystemPlanner.plan(settings, 12345L);
+	}
+}
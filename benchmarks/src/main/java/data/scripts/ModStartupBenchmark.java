@@ -0,0 +1,111 @@
+package data.scripts;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.janino.JavaSourceClassLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What a mod costs the game's start-up: compiling data/scripts with Janino (what the game does when mod_info.json
+ * has no "jars"), against loading the same classes from jars/<Mod>.jar (what the -Prelease copy does).
+ *
+ * Every class in data/scripts is loaded, through a fresh class loader each time, so nothing is reused between runs.
+ * Run it from the repository root after building, since it reads the mods' folders from there.
+ * Each run is timed on its own (single shot), like a real start-up; early runs include JIT warm-up of Janino itself,
+ * which the game pays for too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(3)
+public class ModStartupBenchmark {
+	@Param({"MakeAStar", "MakeAMarket", "TestPlanet"})
+	public String mod;
+
+	private File scripts;
+	private URL jar;
+	private final List<String> classNames = new ArrayList<String>();
+
+	@Setup
+	public void setUp() throws Exception {
+		scripts = new File(mod);
+		File jarFile = new File(mod, "jars/" + mod + ".jar");
+		if (!jarFile.isFile()) {
+			throw new IllegalStateException(jarFile + " is missing; build first, and run from the repository root");
+		}
+		jar = jarFile.toURI().toURL();
+		classNames.clear();
+		findClasses(new File(mod, "data/scripts"), "data.scripts.");
+	}
+
+	private void findClasses(File directory, String prefix) {
+		File[] files = directory.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			String name = files[i].getName();
+			if (files[i].isDirectory()) {
+				findClasses(files[i], prefix + name + ".");
+			} else if (name.endsWith(".java")) {
+				classNames.add(prefix + name.substring(0, name.length() - ".java".length()));
+			}
+		}
+	}
+
+	@Benchmark
+	public int compileScripts() throws Exception {
+		ClassLoader loader = new JavaSourceClassLoader(new WithoutModClasses(), new File[] {scripts}, "UTF-8");
+		return loadAll(loader);
+	}
+
+	@Benchmark
+	public int loadJar() throws Exception {
+		URLClassLoader loader = new URLClassLoader(new URL[] {jar}, new WithoutModClasses());
+		try {
+			return loadAll(loader);
+		} finally {
+			loader.close();
+		}
+	}
+
+	private int loadAll(ClassLoader loader) throws Exception {
+		int loaded = 0;
+		for (int i = 0; i < classNames.size(); i++) {
+			loaded += loader.loadClass(classNames.get(i)).getDeclaredMethods().length;
+		}
+		return loaded;
+	}
+
+	/**
+	 * The benchmark jar has MakeAStar's classes in it. Hiding data.scripts from the parent
+	 * makes both loaders really compile or read every class themselves.
+	 */
+	private static class WithoutModClasses extends ClassLoader {
+		WithoutModClasses() {
+			super(ModStartupBenchmark.class.getClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (name.startsWith("data.scripts.")) {
+				throw new ClassNotFoundException(name);
+			}
+			return super.loadClass(name, resolve);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package data.scripts;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+
+/**
+ * The same planets looked up again and again, through a TPEntityRegistry and straight from the sector.
+ * HeadlessSector searches its lists like the game does, but every call to it goes through a proxy,
+ * so the direct lookups here are slower than they would be in the game; compare allocations with -prof gc as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TPEntityRegistryBenchmark {
+	private static final int PLANETS_PER_SYSTEM = 10;
+	private static final int LOOKUPS = 64;
+
+	@Param({"10", "100"})
+	public int systems;
+
+	private SectorAPI sector;
+	private TPEntityRegistry registry;
+	private String[] systemNames;
+	private String[] ids;
+
+	@Setup
+	public void setUp() {
+		sector = HeadlessSector.install("benchmark");
+		for (int i = 0; i < systems; i++) {
+			HeadlessSector.addSystem(sector, "System " + i, i * 1000, 0, PLANETS_PER_SYSTEM);
+		}
+		registry = new TPEntityRegistry(sector);
+		systemNames = new String[LOOKUPS];
+		ids = new String[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			int system = (i * 7) % systems;
+			systemNames[i] = "System " + system;
+			ids[i] = "system " + system + "_" + (i % PLANETS_PER_SYSTEM);
+		}
+	}
+
+	@Benchmark
+	public void registry(Blackhole blackhole) {
+		for (int i = 0; i < LOOKUPS; i++) {
+			blackhole.consume(registry.getEntity(systemNames[i], ids[i]));
+		}
+	}
+
+	@Benchmark
+	public void direct(Blackhole blackhole) {
+		for (int i = 0; i < LOOKUPS; i++) {
+			StarSystemAPI system = sector.getStarSystem(systemNames[i]);
+			blackhole.consume(system.getEntityById(ids[i]));
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package data.scripts;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fs.starfarer.api.campaign.PlanetAPI;
+import com.fs.starfarer.api.campaign.SectorAPI;
+import com.fs.starfarer.api.campaign.StarSystemAPI;
+
+/**
+ * Adding 10, 100 and 1000 bodies to one system in a HeadlessSector, updating the orbits after every body
+ * against one TPOrbitUpdates batch around all of them.
+ * HeadlessSector's updateAllOrbits() sorts the planet list, so this measures the re-sorting and not the game's own orbit maths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TPOrbitUpdatesBenchmark {
+	@Param({"10", "100", "1000"})
+	public int bodies;
+
+	private StarSystemAPI system;
+	private PlanetAPI star;
+
+	//A fresh system each call, so every call adds its bodies to a system of the same size.
+	@Setup(Level.Invocation)
+	public void setUp() {
+		SectorAPI sector = HeadlessSector.install("benchmark");
+		system = HeadlessSector.addSystem(sector, "Orbit Test", 0, 0, 0);
+		star = system.getStar();
+	}
+
+	@Benchmark
+	public StarSystemAPI unbatched() {
+		for (int i = 0; i < bodies; i++) {
+			addBody(i);
+			TPOrbitUpdates.update(system);
+		}
+		return system;
+	}
+
+	@Benchmark
+	public StarSystemAPI batched() {
+		TPOrbitUpdates.begin();
+		try {
+			for (int i = 0; i < bodies; i++) {
+				addBody(i);
+				TPOrbitUpdates.update(system);
+			}
+		} finally {
+			TPOrbitUpdates.end();
+		}
+		return system;
+	}
+
+	//Added outermost first, so every update has to move the new body to the front.
+	private void addBody(int i) {
+		system.addPlanet("body_" + i, star, "Body " + i, "barren", i * 37, 50, 100000 - i * 50, 100);
+	}
+}